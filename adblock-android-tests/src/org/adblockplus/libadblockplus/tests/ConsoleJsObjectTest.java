@@ -41,6 +41,23 @@ public class ConsoleJsObjectTest extends BaseJsEngineTest
     assertEquals("eval:3", mockLogSystem.getLastSource());
   }
 
+  @Test
+  public void testMinLogLevel()
+  {
+    platform.setMinLogLevel(LogSystem.LogLevel.WARN);
+    final long forwardedCount = platform.getForwardedLogMessagesCount();
+    final long filteredCount = platform.getFilteredLogMessagesCount();
+
+    jsEngine.evaluate("console.info('foo')");
+    assertFalse("foo".equals(mockLogSystem.getLastMessage()));
+    assertEquals(filteredCount + 1, platform.getFilteredLogMessagesCount());
+
+    jsEngine.evaluate("console.warn('bar')");
+    assertEquals(LogSystem.LogLevel.WARN, mockLogSystem.getLastLogLevel());
+    assertEquals("bar", mockLogSystem.getLastMessage());
+    assertEquals(forwardedCount + 1, platform.getForwardedLogMessagesCount());
+  }
+
   @Test
   public void testConsoleDebugCall()
   {
@@ -0,0 +1,94 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.FilterEngine.ContentType;
+import org.adblockplus.libadblockplus.android.ContentTypeClassifier;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Test for ContentTypeClassifier
+ */
+public class ContentTypeClassifierTest extends InstrumentationTestCase
+{
+  private final ContentTypeClassifier classifier = new ContentTypeClassifier();
+
+  private ContentType classify(String url)
+  {
+    return classifier.classify(url, null);
+  }
+
+  private ContentType classify(String url, String headerName, String headerValue)
+  {
+    Map<String, String> headers = new HashMap<String, String>();
+    headers.put(headerName, headerValue);
+    return classifier.classify(url, headers);
+  }
+
+  @Test
+  public void testExtension()
+  {
+    assertEquals(ContentType.SCRIPT, classify("http://example.com/script.js"));
+    assertEquals(ContentType.STYLESHEET, classify("http://example.com/style.css"));
+    assertEquals(ContentType.IMAGE, classify("http://example.com/a/b/image.png"));
+    assertEquals(ContentType.IMAGE, classify("http://example.com/image.JPEG"));
+    assertEquals(ContentType.FONT, classify("http://example.com/font.woff2"));
+    assertEquals(ContentType.SUBDOCUMENT, classify("http://example.com/frame.html"));
+    assertEquals(ContentType.MEDIA, classify("http://example.com/video.mp4"));
+    assertEquals(ContentType.OBJECT, classify("http://example.com/flash.swf"));
+  }
+
+  @Test
+  public void testExtensionWithQueryAndFragment()
+  {
+    assertEquals(ContentType.SCRIPT, classify("http://example.com/script.js?v=1.2.css"));
+    assertEquals(ContentType.IMAGE, classify("http://example.com/image.gif#anchor"));
+    assertEquals(ContentType.SCRIPT, classify("http://example.com/script.js;jsessionid=1"));
+  }
+
+  @Test
+  public void testNoExtension()
+  {
+    assertEquals(ContentType.OTHER, classify("http://example.com/"));
+    assertEquals(ContentType.OTHER, classify("http://example.js"));
+    assertEquals(ContentType.OTHER, classify("http://example.com/dir.js/file"));
+    assertEquals(ContentType.OTHER, classify("http://example.com/file."));
+    assertEquals(ContentType.OTHER, classify("http://example.com/file.unknown"));
+    assertEquals(ContentType.OTHER, classify("http://example.com/?file.js"));
+    assertEquals(ContentType.OTHER, classify(null));
+  }
+
+  @Test
+  public void testWebSocket()
+  {
+    assertEquals(ContentType.WEBSOCKET, classify("wss://example.com/socket"));
+    assertEquals(ContentType.WEBSOCKET, classify("http://example.com/socket", "Upgrade", "websocket"));
+  }
+
+  @Test
+  public void testHeaders()
+  {
+    assertEquals(ContentType.XMLHTTPREQUEST,
+      classify("http://example.com/data.js", "X-Requested-With", "XMLHttpRequest"));
+    assertEquals(ContentType.IMAGE,
+      classify("http://example.com/image.php", "Accept", "image/webp,image/apng,image/*,*/*;q=0.8"));
+    assertEquals(ContentType.STYLESHEET,
+      classify("http://example.com/style", "accept", "text/css,*/*;q=0.1"));
+    assertEquals(ContentType.SUBDOCUMENT,
+      classify("http://example.com/frame", "Accept", "text/html,application/xhtml+xml"));
+    assertEquals(ContentType.MEDIA,
+      classify("http://example.com/stream", "Accept", "video/webm,video/ogg"));
+  }
+
+  @Test
+  public void testHeadersNotSpecific()
+  {
+    assertEquals(ContentType.SCRIPT,
+      classify("http://example.com/script.js", "Accept", "*/*"));
+    assertEquals(ContentType.OTHER,
+      classify("http://example.com/data", "X-Requested-With", "com.example.app"));
+  }
+}
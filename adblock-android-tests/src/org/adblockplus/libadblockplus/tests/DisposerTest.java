@@ -0,0 +1,318 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import org.adblockplus.libadblockplus.Disposable;
+import org.adblockplus.libadblockplus.Disposer;
+import org.junit.Test;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for Disposer, also measures handles churn from several threads
+ * compared to a registry guarded by a global lock (printed to logcat)
+ */
+public class DisposerTest extends InstrumentationTestCase
+{
+  private static final String TAG = DisposerTest.class.getSimpleName();
+  private static final int THREADS_COUNT = 4;
+  private static final int HANDLES_PER_THREAD = 50000;
+  private static final long TIMEOUT_SECONDS = 30;
+
+  private static final class CountingDisposable implements Disposable
+  {
+    private final AtomicInteger counter;
+
+    private CountingDisposable(AtomicInteger counter)
+    {
+      this.counter = counter;
+    }
+
+    @Override
+    public void dispose()
+    {
+      counter.incrementAndGet();
+    }
+  }
+
+  // Disposer with `synchronized` HashSet registry (as it used to be), the churn baseline
+  private static final class SynchronizedDisposer extends WeakReference<Disposable>
+  {
+    private static final ReferenceQueue<Disposable> referenceQueue = new ReferenceQueue<Disposable>();
+    private static final HashSet<SynchronizedDisposer> disposerSet = new HashSet<SynchronizedDisposer>();
+    private final Disposable disposable;
+    private volatile boolean disposed = false;
+
+    private SynchronizedDisposer(final Disposable referent, final Disposable disposable)
+    {
+      super(referent, referenceQueue);
+      this.disposable = disposable;
+
+      synchronized (disposerSet)
+      {
+        disposerSet.add(this);
+      }
+    }
+
+    private synchronized void dispose()
+    {
+      if (!this.disposed)
+      {
+        this.disposable.dispose();
+        this.disposed = true;
+        synchronized (disposerSet)
+        {
+          disposerSet.remove(this);
+        }
+      }
+    }
+  }
+
+  private interface Churn
+  {
+    void createAndDispose(AtomicInteger counter);
+  }
+
+  // returns total time in nanoseconds
+  private long runChurn(final Churn churn, final AtomicInteger counter) throws InterruptedException
+  {
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final CountDownLatch finishedLatch = new CountDownLatch(THREADS_COUNT);
+
+    final List<Thread> threads = new ArrayList<Thread>(THREADS_COUNT);
+    for (int i = 0; i < THREADS_COUNT; i++)
+    {
+      threads.add(new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            startLatch.await();
+            for (int j = 0; j < HANDLES_PER_THREAD; j++)
+            {
+              churn.createAndDispose(counter);
+            }
+          }
+          catch (InterruptedException e)
+          {
+            Thread.currentThread().interrupt();
+          }
+          finally
+          {
+            finishedLatch.countDown();
+          }
+        }
+      }));
+    }
+
+    for (Thread thread : threads)
+    {
+      thread.start();
+    }
+
+    final long started = System.nanoTime();
+    startLatch.countDown();
+    assertTrue(finishedLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    return System.nanoTime() - started;
+  }
+
+  @Test
+  public void testDisposeOnce()
+  {
+    final AtomicInteger counter = new AtomicInteger(0);
+    final Disposable referent = new CountingDisposable(new AtomicInteger(0));
+    final Disposer disposer = new Disposer(referent, new CountingDisposable(counter));
+
+    disposer.dispose();
+    disposer.dispose();
+    assertEquals(1, counter.get());
+  }
+
+  @Test
+  public void testDisposeFailure()
+  {
+    final int undisposedCount = Disposer.getUndisposedCount();
+    final Disposable referent = new CountingDisposable(new AtomicInteger(0));
+    final Disposer disposer = new Disposer(referent, new Disposable()
+    {
+      @Override
+      public void dispose()
+      {
+        throw new RuntimeException();
+      }
+    });
+    assertEquals(undisposedCount + 1, Disposer.getUndisposedCount());
+
+    disposer.dispose();
+    assertEquals(undisposedCount, Disposer.getUndisposedCount());
+  }
+
+  @Test
+  public void testTypeStats()
+  {
+    final Disposer.Stats stats = Disposer.getTypeStats().get(CountingDisposable.class);
+    final int liveCount = (stats != null ? stats.getLiveCount() : 0);
+    final long createdCount = (stats != null ? stats.getCreatedCount() : 0);
+
+    final Disposable referent1 = new CountingDisposable(new AtomicInteger(0));
+    final Disposable referent2 = new CountingDisposable(new AtomicInteger(0));
+    final Disposer disposer1 = new Disposer(referent1, new CountingDisposable(new AtomicInteger(0)));
+    final Disposer disposer2 = new Disposer(referent2, new CountingDisposable(new AtomicInteger(0)));
+
+    final Disposer.Stats newStats = Disposer.getTypeStats().get(CountingDisposable.class);
+    assertNotNull(newStats);
+    assertEquals(liveCount + 2, newStats.getLiveCount());
+    assertEquals(createdCount + 2, newStats.getCreatedCount());
+    assertTrue(newStats.getPeakLiveCount() >= liveCount + 2);
+
+    disposer1.dispose();
+    disposer2.dispose();
+    assertEquals(liveCount, newStats.getLiveCount());
+    assertTrue(newStats.getPeakLiveCount() >= liveCount + 2);
+  }
+
+  private static void createLeakedDisposer(AtomicInteger counter)
+  {
+    new Disposer(new CountingDisposable(new AtomicInteger(0)), new CountingDisposable(counter));
+  }
+
+  @Test
+  public void testReclaimed() throws InterruptedException
+  {
+    final AtomicInteger counter = new AtomicInteger(0);
+    final CountDownLatch reclaimedLatch = new CountDownLatch(1);
+    final Throwable[] allocationSite = new Throwable[1];
+    final long reclaimedCount = Disposer.getTotalStats().getReclaimedCount();
+    final long cleanerTotalNanos = Disposer.getCleanerTotalNanos();
+
+    Disposer.setAllocationSiteCaptureEnabled(true);
+    Disposer.setReclaimListener(new Disposer.ReclaimListener()
+    {
+      @Override
+      public void onReclaimed(Throwable site)
+      {
+        // objects created before capture was enabled can be reclaimed too
+        if (site != null)
+        {
+          allocationSite[0] = site;
+          reclaimedLatch.countDown();
+        }
+      }
+    });
+
+    try
+    {
+      createLeakedDisposer(counter);
+
+      final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+      while (!reclaimedLatch.await(100, TimeUnit.MILLISECONDS) && System.currentTimeMillis() < deadline)
+      {
+        System.gc();
+      }
+
+      assertEquals(1, counter.get());
+      assertNotNull(allocationSite[0]);
+      assertTrue(Disposer.getTotalStats().getReclaimedCount() > reclaimedCount);
+      assertTrue(Disposer.getCleanerTotalNanos() > cleanerTotalNanos);
+      assertTrue(Disposer.getCleanerMaxNanos() > 0);
+    }
+    finally
+    {
+      Disposer.setReclaimListener(null);
+      Disposer.setAllocationSiteCaptureEnabled(false);
+    }
+  }
+
+  @Test
+  public void testReclaimedIfListenerThrows() throws InterruptedException
+  {
+    final int leakedCount = 10;
+    final AtomicInteger counter = new AtomicInteger(0);
+    Disposer.setReclaimListener(new Disposer.ReclaimListener()
+    {
+      @Override
+      public void onReclaimed(Throwable site)
+      {
+        throw new RuntimeException();
+      }
+    });
+
+    try
+    {
+      for (int i = 0; i < leakedCount; i++)
+      {
+        createLeakedDisposer(counter);
+      }
+
+      final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+      while (counter.get() < leakedCount && System.currentTimeMillis() < deadline)
+      {
+        System.gc();
+        Thread.sleep(100);
+      }
+
+      assertEquals(leakedCount, counter.get());
+    }
+    finally
+    {
+      Disposer.setReclaimListener(null);
+    }
+  }
+
+  @Test
+  public void testConcurrentChurn() throws InterruptedException
+  {
+    final int handlesCount = THREADS_COUNT * HANDLES_PER_THREAD;
+    final int undisposedCount = Disposer.getUndisposedCount();
+
+    final AtomicInteger baselineCounter = new AtomicInteger(0);
+    final long baselineNanos = runChurn(new Churn()
+    {
+      @Override
+      public void createAndDispose(AtomicInteger counter)
+      {
+        final Disposable referent = new CountingDisposable(counter);
+        new SynchronizedDisposer(referent, new CountingDisposable(counter)).dispose();
+      }
+    }, baselineCounter);
+    assertEquals(handlesCount, baselineCounter.get());
+
+    final AtomicInteger counter = new AtomicInteger(0);
+    final long nanos = runChurn(new Churn()
+    {
+      @Override
+      public void createAndDispose(AtomicInteger counter)
+      {
+        final Disposable referent = new CountingDisposable(counter);
+        new Disposer(referent, new CountingDisposable(counter)).dispose();
+      }
+    }, counter);
+
+    // a referent can be collected before explicit `dispose()`,
+    // then it's still being disposed by cleaner thread
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+    while ((counter.get() < handlesCount || Disposer.getUndisposedCount() > undisposedCount)
+      && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(10);
+    }
+    assertEquals(handlesCount, counter.get());
+    assertTrue(Disposer.getUndisposedCount() <= undisposedCount);
+
+    // not asserted, wall-clock time depends on the device (cores count especially)
+    Log.i(TAG, handlesCount + " handles created and disposed on " + THREADS_COUNT + " threads in "
+      + (nanos / 1000000) + " ms (" + (nanos / handlesCount) + " ns per handle), "
+      + "synchronized HashSet registry: " + (baselineNanos / 1000000) + " ms ("
+      + (baselineNanos / handlesCount) + " ns per handle)");
+  }
+}
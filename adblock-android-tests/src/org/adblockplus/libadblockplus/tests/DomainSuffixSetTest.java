@@ -0,0 +1,102 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.android.DomainSuffixSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test for DomainSuffixSet
+ */
+public class DomainSuffixSetTest extends InstrumentationTestCase
+{
+  @Test
+  public void testEmpty()
+  {
+    DomainSuffixSet set = DomainSuffixSet.build(null);
+    assertTrue(set.isEmpty());
+    assertFalse(set.matches("example.com"));
+    assertFalse(set.matchesUrl("http://example.com/"));
+
+    set = DomainSuffixSet.build(Arrays.asList(null, "", " "));
+    assertTrue(set.isEmpty());
+  }
+
+  @Test
+  public void testExactMatch()
+  {
+    DomainSuffixSet set = DomainSuffixSet.build(Arrays.asList("example.com", "example.org"));
+    assertEquals(2, set.size());
+    assertTrue(set.matches("example.com"));
+    assertTrue(set.matches("example.org"));
+    assertFalse(set.matches("example.net"));
+    assertFalse(set.matches(null));
+  }
+
+  @Test
+  public void testSubdomainMatch()
+  {
+    DomainSuffixSet set = DomainSuffixSet.build(Arrays.asList("example.com"));
+    assertTrue(set.matches("www.example.com"));
+    assertTrue(set.matches("a.b.c.example.com"));
+    assertFalse(set.matches("myexample.com"));
+    assertFalse(set.matches("com"));
+    assertFalse(set.matches("example.com.evil.org"));
+  }
+
+  @Test
+  public void testCaseAndTrailingDot()
+  {
+    DomainSuffixSet set = DomainSuffixSet.build(Arrays.asList("Example.COM."));
+    assertEquals(1, set.size());
+    assertTrue(set.matches("www.example.com"));
+    assertTrue(set.matches("WWW.EXAMPLE.COM."));
+  }
+
+  @Test
+  public void testDuplicates()
+  {
+    DomainSuffixSet set = DomainSuffixSet.build(Arrays.asList("example.com", "EXAMPLE.com", "example.com"));
+    assertEquals(1, set.size());
+  }
+
+  @Test
+  public void testRegion()
+  {
+    DomainSuffixSet set = DomainSuffixSet.build(Arrays.asList("example.com"));
+    String s = "xxwww.example.comxx";
+    assertTrue(set.matches(s, 2, s.length() - 2));
+    assertFalse(set.matches(s, 0, s.length()));
+  }
+
+  @Test
+  public void testUrl()
+  {
+    DomainSuffixSet set = DomainSuffixSet.build(Arrays.asList("example.com"));
+    assertTrue(set.matchesUrl("https://user@www.example.com:8080/path?query"));
+    assertFalse(set.matchesUrl("https://www.example.org/example.com"));
+    assertFalse(set.matchesUrl("about:blank"));
+    assertFalse(set.matchesUrl(null));
+  }
+
+  @Test
+  public void testManyDomains()
+  {
+    List<String> domains = new ArrayList<String>();
+    for (int i = 0; i < 5000; i++)
+    {
+      domains.add("domain" + i + ".com");
+    }
+    DomainSuffixSet set = DomainSuffixSet.build(domains);
+    assertEquals(5000, set.size());
+    for (int i = 0; i < 5000; i++)
+    {
+      assertTrue(set.matches("www.domain" + i + ".com"));
+    }
+    assertFalse(set.matches("domain5000.com"));
+  }
+}
@@ -0,0 +1,70 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.android.ElemhideCssBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test for ElemhideCssBuilder
+ */
+public class ElemhideCssBuilderTest extends InstrumentationTestCase
+{
+  @Test
+  public void testEmpty()
+  {
+    assertEquals("", ElemhideCssBuilder.build(null));
+    assertEquals("", ElemhideCssBuilder.build(new ArrayList<String>()));
+  }
+
+  @Test
+  public void testSingleRule()
+  {
+    String css = ElemhideCssBuilder.build(Arrays.asList("#ad", ".banner", "div[id=\"x\"]"));
+    assertEquals("#ad, .banner, div[id=\"x\"] { display: none !important; }\n", css);
+  }
+
+  @Test
+  public void testGroupSizeIsBounded()
+  {
+    String css = ElemhideCssBuilder.build(Arrays.asList("a", "b", "c", "d", "e"), 2);
+    assertEquals(
+      "a, b { display: none !important; }\n" +
+      "c, d { display: none !important; }\n" +
+      "e { display: none !important; }\n", css);
+  }
+
+  @Test
+  public void testManySelectors()
+  {
+    List<String> selectors = new ArrayList<String>();
+    for (int i = 0; i < 1000; i++)
+    {
+      selectors.add(".ad" + i);
+    }
+
+    String css = ElemhideCssBuilder.build(selectors);
+    int rules = css.split("\n").length;
+    assertEquals(1000 / ElemhideCssBuilder.DEFAULT_MAX_SELECTORS_PER_RULE, rules);
+    assertTrue(css.startsWith(".ad0, .ad1, "));
+    assertTrue(css.endsWith(".ad999 { display: none !important; }\n"));
+  }
+
+  @Test
+  public void testInvalidGroupSize()
+  {
+    try
+    {
+      ElemhideCssBuilder.build(Arrays.asList("a"), 0);
+      fail("IllegalArgumentException expected");
+    }
+    catch (IllegalArgumentException e)
+    {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.android.ElemhideSelectorsCache;
+import org.junit.Test;
+
+/**
+ * Test for ElemhideSelectorsCache
+ */
+public class ElemhideSelectorsCacheTest extends InstrumentationTestCase
+{
+  private static final String DOMAIN = "example.com";
+  private static final String PAYLOAD = "[\"#ad\",\".banner\"]";
+
+  @Test
+  public void testHitAndMiss()
+  {
+    ElemhideSelectorsCache cache = new ElemhideSelectorsCache(1024);
+    assertNull(cache.get(DOMAIN));
+    assertEquals(1, cache.getMissCount());
+
+    cache.put(DOMAIN, PAYLOAD, cache.getGeneration());
+    assertEquals(PAYLOAD, cache.get(DOMAIN));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getCount());
+    assertEquals((DOMAIN.length() + PAYLOAD.length()) * 2, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testInvalidate()
+  {
+    ElemhideSelectorsCache cache = new ElemhideSelectorsCache(1024);
+    cache.put(DOMAIN, PAYLOAD, cache.getGeneration());
+
+    cache.invalidate();
+    assertNull(cache.get(DOMAIN));
+    assertEquals(0, cache.getCount());
+    assertEquals(0, cache.getSizeBytes());
+  }
+
+  @Test
+  public void testOutdatedPayloadIsNotCached()
+  {
+    ElemhideSelectorsCache cache = new ElemhideSelectorsCache(1024);
+    int generation = cache.getGeneration();
+
+    // filters changed while the selectors were being got
+    cache.invalidate();
+    cache.put(DOMAIN, PAYLOAD, generation);
+    assertNull(cache.get(DOMAIN));
+  }
+
+  @Test
+  public void testSizeIsBounded()
+  {
+    int entrySize = ("domain0.com".length() + PAYLOAD.length()) * 2;
+    ElemhideSelectorsCache cache = new ElemhideSelectorsCache(entrySize * 3);
+    for (int i = 0; i < 10; i++)
+    {
+      cache.put("domain" + i + ".com", PAYLOAD, cache.getGeneration());
+    }
+
+    assertEquals(3, cache.getCount());
+    assertTrue(cache.getSizeBytes() <= entrySize * 3);
+
+    // least recently used are evicted
+    assertNull(cache.get("domain0.com"));
+    assertEquals(PAYLOAD, cache.get("domain9.com"));
+  }
+
+  @Test
+  public void testGeneric()
+  {
+    ElemhideSelectorsCache cache = new ElemhideSelectorsCache(1024);
+    assertNull(cache.getGeneric());
+
+    cache.putGeneric(PAYLOAD, cache.getGeneration());
+    assertEquals(PAYLOAD, cache.getGeneric());
+
+    // not counted in domain payloads size
+    assertEquals(0, cache.getSizeBytes());
+
+    cache.invalidate();
+    assertNull(cache.getGeneric());
+  }
+}
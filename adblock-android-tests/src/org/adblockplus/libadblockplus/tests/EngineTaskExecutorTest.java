@@ -0,0 +1,198 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.android.EngineTaskExecutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for EngineTaskExecutor
+ */
+public class EngineTaskExecutorTest extends InstrumentationTestCase
+{
+  private static final long TIMEOUT_SECONDS = 5;
+
+  private static Runnable await(final CountDownLatch latch)
+  {
+    return new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          latch.await();
+        }
+        catch (InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+
+  private static Runnable record(final List<String> order, final String name, final CountDownLatch done)
+  {
+    return new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        order.add(name);
+        done.countDown();
+      }
+    };
+  }
+
+  @Test
+  public void testPriorityOrder() throws Exception
+  {
+    EngineTaskExecutor executor = new EngineTaskExecutor(1);
+    try
+    {
+      CountDownLatch blocker = new CountDownLatch(1);
+      executor.submit(await(blocker), EngineTaskExecutor.PRIORITY_NORMAL);
+
+      List<String> order = Collections.synchronizedList(new ArrayList<String>());
+      CountDownLatch done = new CountDownLatch(4);
+      executor.submit(record(order, "low", done), EngineTaskExecutor.PRIORITY_LOW);
+      executor.submit(record(order, "normal1", done), EngineTaskExecutor.PRIORITY_NORMAL);
+      executor.submit(record(order, "high", done), EngineTaskExecutor.PRIORITY_HIGH);
+      executor.submit(record(order, "normal2", done), EngineTaskExecutor.PRIORITY_NORMAL);
+      assertEquals(4, executor.getQueueSize());
+
+      blocker.countDown();
+      assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+      assertEquals("high", order.get(0));
+      assertEquals("normal1", order.get(1));
+      assertEquals("normal2", order.get(2));
+      assertEquals("low", order.get(3));
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCancelQueued() throws Exception
+  {
+    EngineTaskExecutor executor = new EngineTaskExecutor(1);
+    try
+    {
+      CountDownLatch blocker = new CountDownLatch(1);
+      executor.submit(await(blocker), EngineTaskExecutor.PRIORITY_NORMAL);
+
+      List<String> order = Collections.synchronizedList(new ArrayList<String>());
+      CountDownLatch cancelledDone = new CountDownLatch(1);
+      Future<?> cancelled = executor.submit(
+        record(order, "cancelled", cancelledDone), EngineTaskExecutor.PRIORITY_HIGH);
+      CountDownLatch done = new CountDownLatch(1);
+      executor.submit(record(order, "executed", done), EngineTaskExecutor.PRIORITY_NORMAL);
+      assertEquals(2, executor.getQueueSize());
+
+      assertTrue(cancelled.cancel(true));
+      assertEquals(1, executor.getQueueSize());
+
+      blocker.countDown();
+      assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      assertEquals(1, order.size());
+      assertEquals("executed", order.get(0));
+      assertEquals(1, executor.getCancelledCount());
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testCancelRunning() throws Exception
+  {
+    EngineTaskExecutor executor = new EngineTaskExecutor(1);
+    try
+    {
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch interrupted = new CountDownLatch(1);
+      Future<?> future = executor.submit(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          started.countDown();
+          try
+          {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS * 2));
+          }
+          catch (InterruptedException e)
+          {
+            interrupted.countDown();
+          }
+        }
+      }, EngineTaskExecutor.PRIORITY_NORMAL);
+
+      assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      assertTrue(future.cancel(true));
+      assertTrue(interrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testMetrics() throws Exception
+  {
+    EngineTaskExecutor executor = new EngineTaskExecutor(2);
+    try
+    {
+      CountDownLatch done = new CountDownLatch(10);
+      for (int i = 0; i < 10; i++)
+      {
+        executor.submit(record(new ArrayList<String>(), "task" + i, done), EngineTaskExecutor.PRIORITY_NORMAL);
+      }
+      assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+      assertEquals(10, executor.getSubmittedCount());
+      // `done()` is invoked after the task body
+      for (int i = 0; i < 100 && executor.getCompletedCount() < 10; i++)
+      {
+        Thread.sleep(10);
+      }
+      assertEquals(10, executor.getCompletedCount());
+      assertEquals(0, executor.getCancelledCount());
+      assertTrue(executor.getMaxLatencyMillis() >= executor.getAverageRunMillis());
+    }
+    finally
+    {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testShared() throws Exception
+  {
+    final EngineTaskExecutor executor = EngineTaskExecutor.getShared();
+    assertSame(executor, EngineTaskExecutor.getShared());
+
+    final CountDownLatch executed = new CountDownLatch(1);
+    executor.submit(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        executed.countDown();
+      }
+    }, EngineTaskExecutor.PRIORITY_NORMAL);
+    assertTrue(executed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.tests;
+
+import android.util.Log;
+
+import org.adblockplus.libadblockplus.Filter;
+import org.adblockplus.libadblockplus.FilterEngine;
+
+import org.junit.Test;
+
+/**
+ * Measures the cost of `FilterEngine` match calls (per call),
+ * results are printed to logcat. Matching in JS dominates the call,
+ * so content type marshalling changes are compared by the logged figures, not asserted
+ */
+public class FilterEngineMatchesBenchmarkTest extends BaseFilterEngineTest
+{
+  private static final String TAG = FilterEngineMatchesBenchmarkTest.class.getSimpleName();
+  private static final int ITERATIONS = 2000;
+  private static final int WARMUP_ITERATIONS = 200;
+
+  private static final String[] DOCUMENT_URLS = new String[] { "http://example.com/" };
+  private static final FilterEngine.ContentType[] CONTENT_TYPES = new FilterEngine.ContentType[]
+  {
+    FilterEngine.ContentType.IMAGE,
+    FilterEngine.ContentType.SCRIPT,
+    FilterEngine.ContentType.STYLESHEET,
+    FilterEngine.ContentType.XMLHTTPREQUEST
+  };
+
+  @Override
+  protected void setUp() throws Exception
+  {
+    super.setUp();
+    filterEngine.getFilter("adbanner.gif").addToList();
+    filterEngine.getFilter("||example.org/tracker.js").addToList();
+    filterEngine.getFilter("@@notbanner.gif").addToList();
+  }
+
+  private static String getUrl(int i)
+  {
+    return "http://example.org/resource" + (i % 100) + ".gif";
+  }
+
+  private long runMatches(int iterations)
+  {
+    final long started = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+    {
+      Filter filter = filterEngine.matches(getUrl(i), CONTENT_TYPES[i % CONTENT_TYPES.length], DOCUMENT_URLS);
+      if (filter != null)
+      {
+        filter.dispose();
+      }
+    }
+    return System.nanoTime() - started;
+  }
+
+  private long runMatchVerdict(int iterations)
+  {
+    final long started = System.nanoTime();
+    for (int i = 0; i < iterations; i++)
+    {
+      filterEngine.matchVerdict(getUrl(i), CONTENT_TYPES[i % CONTENT_TYPES.length], DOCUMENT_URLS);
+    }
+    return System.nanoTime() - started;
+  }
+
+  private void log(String name, long nanos)
+  {
+    Log.i(TAG, name + ": " + (nanos / ITERATIONS) + " ns per call ("
+      + ITERATIONS + " calls in " + (nanos / 1000000) + " ms)");
+  }
+
+  @Test
+  public void testMatches()
+  {
+    runMatches(WARMUP_ITERATIONS);
+    log("matches", runMatches(ITERATIONS));
+
+    Filter filter = filterEngine.matches(
+      "http://example.org/adbanner.gif", FilterEngine.ContentType.IMAGE, DOCUMENT_URLS);
+    assertNotNull(filter);
+    assertEquals(Filter.Type.BLOCKING, filter.getType());
+  }
+
+  @Test
+  public void testMatchVerdict()
+  {
+    runMatchVerdict(WARMUP_ITERATIONS);
+    log("matchVerdict", runMatchVerdict(ITERATIONS));
+
+    assertEquals(FilterEngine.MATCH_BLOCKING, filterEngine.matchVerdict(
+      "http://example.org/adbanner.gif", FilterEngine.ContentType.IMAGE, DOCUMENT_URLS));
+  }
+}
@@ -19,12 +19,15 @@ package org.adblockplus.libadblockplus.tests;
 
 import org.adblockplus.libadblockplus.Filter;
 import org.adblockplus.libadblockplus.FilterEngine;
+import org.adblockplus.libadblockplus.JsValue;
 import org.adblockplus.libadblockplus.MockFilterChangeCallback;
 import org.adblockplus.libadblockplus.Subscription;
 
 import org.junit.Test;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class FilterEngineTest extends BaseFilterEngineTest
 {
@@ -323,6 +326,95 @@ public class FilterEngineTest extends BaseFilterEngineTest
     assertEquals(Filter.Type.EXCEPTION, match5.getType());
   }
 
+  @Test
+  public void testMatchesBatch()
+  {
+    filterEngine.getFilter("adbanner.gif").addToList();
+    filterEngine.getFilter("@@notbanner.gif").addToList();
+    filterEngine.getFilter("||example.org/tracker.js").addToList();
+    filterEngine.getFilter("/script.js$image").addToList();
+
+    byte[] verdicts = filterEngine.matchesBatch(
+      new String[]
+        {
+          "http://example.org/adbanner.gif",
+          "http://example.org/notbanner.gif",
+          "http://example.org/tracker.js",
+          "http://example.org/script.js",
+          "http://example.org/script.js",
+          "http://example.org/other.gif"
+        },
+      new int[]
+        {
+          FilterEngine.ContentType.IMAGE.ordinal(),
+          FilterEngine.ContentType.IMAGE.ordinal(),
+          FilterEngine.ContentType.SCRIPT.ordinal(),
+          FilterEngine.ContentType.IMAGE.ordinal(),
+          FilterEngine.ContentType.SCRIPT.ordinal(),
+          FilterEngine.ContentType.IMAGE.ordinal()
+        },
+      new String[]
+        {
+          "http://example.com/"
+        });
+
+    assertEquals(6, verdicts.length);
+    assertEquals(FilterEngine.MATCH_BLOCKING, verdicts[0]);
+    assertEquals(FilterEngine.MATCH_EXCEPTION, verdicts[1]);
+    assertEquals(FilterEngine.MATCH_BLOCKING | FilterEngine.MATCH_FLAG_DOMAIN_SPECIFIC, verdicts[2]);
+    assertEquals(FilterEngine.MATCH_BLOCKING, verdicts[3]);
+    assertEquals(FilterEngine.MATCH_NONE, verdicts[4]);
+    assertEquals(FilterEngine.MATCH_NONE, verdicts[5]);
+  }
+
+  @Test
+  public void testMatchVerdict()
+  {
+    filterEngine.getFilter("adbanner.gif").addToList();
+    filterEngine.getFilter("@@notbanner.gif").addToList();
+    filterEngine.getFilter("||example.org/tracker.js").addToList();
+
+    final String[] documentUrls = new String[] { "http://example.com/" };
+
+    assertEquals(FilterEngine.MATCH_BLOCKING, filterEngine.matchVerdict(
+      "http://example.org/adbanner.gif", FilterEngine.ContentType.IMAGE, documentUrls));
+    assertEquals(FilterEngine.MATCH_EXCEPTION, filterEngine.matchVerdict(
+      "http://example.org/notbanner.gif", FilterEngine.ContentType.IMAGE, documentUrls));
+    assertEquals(FilterEngine.MATCH_BLOCKING | FilterEngine.MATCH_FLAG_DOMAIN_SPECIFIC,
+      filterEngine.matchVerdict(
+        "http://example.org/tracker.js", FilterEngine.ContentType.SCRIPT, documentUrls));
+    assertEquals(FilterEngine.MATCH_NONE, filterEngine.matchVerdict(
+      "http://example.org/other.gif", FilterEngine.ContentType.IMAGE, documentUrls));
+  }
+
+  @Test
+  public void testMatchesContentTypes()
+  {
+    filterEngine.getFilter("adbanner.gif$image").addToList();
+    filterEngine.getFilter("adscript.js$script").addToList();
+
+    final String[] documentUrls = new String[] { "http://example.com/" };
+
+    // content type is passed to native code by ordinal
+    for (FilterEngine.ContentType contentType : FilterEngine.ContentType.values())
+    {
+      Filter imageFilter = filterEngine.matches(
+        "http://example.org/adbanner.gif", contentType, documentUrls);
+      assertEquals(contentType.name(), contentType == FilterEngine.ContentType.IMAGE, imageFilter != null);
+
+      Filter scriptFilter = filterEngine.matches(
+        "http://example.org/adscript.js", contentType, "http://example.com/");
+      assertEquals(contentType.name(), contentType == FilterEngine.ContentType.SCRIPT, scriptFilter != null);
+    }
+  }
+
+  @Test
+  public void testMatchesBatchEmpty()
+  {
+    byte[] verdicts = filterEngine.matchesBatch(new String[] {}, new int[] {}, new String[] {});
+    assertEquals(0, verdicts.length);
+  }
+
   @Test
   public void testFirstRunFlag()
   {
@@ -387,6 +479,70 @@ public class FilterEngineTest extends BaseFilterEngineTest
     assertFalse(filterEngine.isElemhideWhitelisted("http://example.co.uk", documentUrls1));
   }
 
+  private boolean isUnconditionalSelectorsSupported()
+  {
+    JsValue value = platform.getJsEngine().evaluate(
+      "(function() { let {ElemHide} = require('elemHide');"
+        + " return 'getUnconditionalSelectors' in ElemHide && 'NO_UNCONDITIONAL' in ElemHide; })()");
+    try
+    {
+      return value.asBoolean();
+    }
+    finally
+    {
+      value.dispose();
+    }
+  }
+
+  @Test
+  public void testGenericAndDomainElementHidingSelectors()
+  {
+    filterEngine.getFilter("##.generic").addToList();
+    filterEngine.getFilter("~example.org##.generic-with-exception").addToList();
+    filterEngine.getFilter("example.com##.specific").addToList();
+
+    List<String> generic = filterEngine.getGenericElementHidingSelectors();
+    assertFalse(generic.contains(".specific"));
+    assertFalse(generic.contains(".generic-with-exception"));
+
+    List<String> domain = filterEngine.getDomainElementHidingSelectors("example.com");
+    assertTrue(domain.contains(".specific"));
+
+    if (isUnconditionalSelectorsSupported())
+    {
+      assertTrue(generic.contains(".generic"));
+      assertFalse(domain.contains(".generic"));
+      assertTrue(domain.contains(".generic-with-exception"));
+    }
+    else
+    {
+      // older cores return all the matching selectors for the domain
+      assertEquals(0, generic.size());
+      assertTrue(domain.contains(".generic"));
+    }
+
+    Set<String> all = new HashSet<String>(filterEngine.getElementHidingSelectors("example.com"));
+    Set<String> split = new HashSet<String>(generic);
+    split.addAll(domain);
+    assertEquals(all, split);
+
+    assertFalse(filterEngine.getDomainElementHidingSelectors("example.org").contains(".generic-with-exception"));
+  }
+
+  @Test
+  public void testElementHidingEmulationSelectors()
+  {
+    filterEngine.getFilter("example.com#?#div:-abp-has(.ad)").addToList();
+    filterEngine.getFilter("example.com##.specific").addToList();
+
+    List<String> selectors = filterEngine.getElementHidingEmulationSelectors("example.com");
+    assertTrue(selectors.contains("div:-abp-has(.ad)"));
+    assertFalse(selectors.contains(".specific"));
+
+    assertFalse(filterEngine.getElementHidingSelectors("example.com").contains("div:-abp-has(.ad)"));
+    assertEquals(0, filterEngine.getElementHidingEmulationSelectors("example.org").size());
+  }
+
   @Test
   public void testGetAcceptableAdsSubscriptionUrl()
   {
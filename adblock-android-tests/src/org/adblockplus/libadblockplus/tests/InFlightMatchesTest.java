@@ -0,0 +1,207 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.android.InFlightMatches;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for InFlightMatches
+ */
+public class InFlightMatchesTest extends InstrumentationTestCase
+{
+  private static final String KEY = "1 http://example.com/ad.png http://example.org/";
+  private static final long TIMEOUT_SECONDS = 5;
+
+  // blocks until released, so other lookups are made while it's in flight
+  private static final class BlockingDecision implements InFlightMatches.Decision
+  {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final AtomicInteger callsCount = new AtomicInteger(0);
+    private volatile boolean failing;
+
+    @Override
+    public boolean matches()
+    {
+      callsCount.incrementAndGet();
+      started.countDown();
+      try
+      {
+        released.await();
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+
+      if (failing)
+      {
+        throw new RuntimeException("Decision failed");
+      }
+      return true;
+    }
+  }
+
+  private static final class CountingDecision implements InFlightMatches.Decision
+  {
+    private final AtomicInteger callsCount = new AtomicInteger(0);
+
+    @Override
+    public boolean matches()
+    {
+      callsCount.incrementAndGet();
+      return true;
+    }
+  }
+
+  private static final class Lookup implements Runnable
+  {
+    private final InFlightMatches inFlightMatches;
+    private final int generation;
+    private final InFlightMatches.Decision decision;
+    private volatile Boolean result;
+    private volatile RuntimeException exception;
+
+    private Lookup(InFlightMatches inFlightMatches, int generation, InFlightMatches.Decision decision)
+    {
+      this.inFlightMatches = inFlightMatches;
+      this.generation = generation;
+      this.decision = decision;
+    }
+
+    @Override
+    public void run()
+    {
+      try
+      {
+        result = inFlightMatches.matches(KEY, generation, decision);
+      }
+      catch (RuntimeException e)
+      {
+        exception = e;
+      }
+    }
+  }
+
+  private static Thread start(Runnable runnable)
+  {
+    final Thread thread = new Thread(runnable);
+    thread.start();
+    return thread;
+  }
+
+  // waits until the thread is blocked waiting for the decision in flight
+  private static void awaitWaiting(Thread thread) throws InterruptedException
+  {
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+    while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline)
+    {
+      Thread.sleep(1);
+    }
+    assertEquals(Thread.State.WAITING, thread.getState());
+  }
+
+  @Test
+  public void testIdenticalLookupsShareDecision() throws InterruptedException
+  {
+    final InFlightMatches inFlightMatches = new InFlightMatches();
+    final BlockingDecision ownerDecision = new BlockingDecision();
+    final CountingDecision waiterDecision = new CountingDecision();
+
+    final Lookup owner = new Lookup(inFlightMatches, 0, ownerDecision);
+    final Thread ownerThread = start(owner);
+    assertTrue(ownerDecision.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    final Lookup waiter = new Lookup(inFlightMatches, 0, waiterDecision);
+    final Thread waiterThread = start(waiter);
+    awaitWaiting(waiterThread);
+
+    ownerDecision.released.countDown();
+    ownerThread.join();
+    waiterThread.join();
+
+    assertEquals(Boolean.TRUE, owner.result);
+    assertEquals(Boolean.TRUE, waiter.result);
+    assertEquals(1, ownerDecision.callsCount.get());
+    assertEquals(0, waiterDecision.callsCount.get());
+    assertEquals(1, inFlightMatches.getCoalescedCount());
+  }
+
+  @Test
+  public void testSequentialLookupsAreNotShared()
+  {
+    final InFlightMatches inFlightMatches = new InFlightMatches();
+    final CountingDecision decision = new CountingDecision();
+
+    assertTrue(inFlightMatches.matches(KEY, 0, decision));
+    assertTrue(inFlightMatches.matches(KEY, 0, decision));
+
+    assertEquals(2, decision.callsCount.get());
+    assertEquals(0, inFlightMatches.getCoalescedCount());
+  }
+
+  @Test
+  public void testStaleGenerationIsNotShared() throws InterruptedException
+  {
+    final InFlightMatches inFlightMatches = new InFlightMatches();
+    final BlockingDecision ownerDecision = new BlockingDecision();
+    final CountingDecision waiterDecision = new CountingDecision();
+
+    final Lookup owner = new Lookup(inFlightMatches, 0, ownerDecision);
+    final Thread ownerThread = start(owner);
+    assertTrue(ownerDecision.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    // filters are changed meanwhile, so the decision in flight is outdated
+    // and the lookup does not wait for it
+    final Lookup waiter = new Lookup(inFlightMatches, 1, waiterDecision);
+    final Thread waiterThread = start(waiter);
+    waiterThread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+    final boolean waited = waiterThread.isAlive();
+
+    ownerDecision.released.countDown();
+    ownerThread.join();
+    waiterThread.join();
+
+    assertFalse(waited);
+    assertEquals(Boolean.TRUE, owner.result);
+    assertEquals(Boolean.TRUE, waiter.result);
+    assertEquals(1, waiterDecision.callsCount.get());
+    assertEquals(0, inFlightMatches.getCoalescedCount());
+  }
+
+  @Test
+  public void testWaiterFallsBackIfOwnerFails() throws InterruptedException
+  {
+    final InFlightMatches inFlightMatches = new InFlightMatches();
+    final BlockingDecision ownerDecision = new BlockingDecision();
+    final CountingDecision waiterDecision = new CountingDecision();
+    ownerDecision.failing = true;
+
+    final Lookup owner = new Lookup(inFlightMatches, 0, ownerDecision);
+    final Thread ownerThread = start(owner);
+    assertTrue(ownerDecision.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    final Lookup waiter = new Lookup(inFlightMatches, 0, waiterDecision);
+    final Thread waiterThread = start(waiter);
+    awaitWaiting(waiterThread);
+
+    ownerDecision.released.countDown();
+    ownerThread.join();
+    waiterThread.join();
+
+    assertNotNull(owner.exception);
+    assertNull(waiter.exception);
+    assertEquals(Boolean.TRUE, waiter.result);
+    assertEquals(1, waiterDecision.callsCount.get());
+    assertEquals(0, inFlightMatches.getCoalescedCount());
+
+    // failed decision is not left in flight
+    assertTrue(inFlightMatches.matches(KEY, 0, waiterDecision));
+    assertEquals(2, waiterDecision.callsCount.get());
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.tests;
+
+import android.util.Log;
+
+import org.adblockplus.libadblockplus.EventCallback;
+import org.adblockplus.libadblockplus.JsValue;
+import org.adblockplus.libadblockplus.LogSystem;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Measures the cost of native-to-Java callbacks (per invocation),
+ * results are printed to logcat. Not asserted: regressions like a per-call method lookup
+ * (~1us) are below the noise of any wall-clock bound that doesn't fail on slow devices
+ */
+public class JniCallbacksBenchmarkTest extends BaseJsEngineTest
+{
+  private static final String TAG = JniCallbacksBenchmarkTest.class.getSimpleName();
+  private static final int ITERATIONS = 10000;
+  private static final int WARMUP_ITERATIONS = 1000;
+
+  private int logCallbacksCount;
+  private int eventCallbacksCount;
+
+  @Override
+  protected LogSystem createLogSystem()
+  {
+    return new LogSystem()
+    {
+      @Override
+      public void logCallback(LogLevel level, String message, String source)
+      {
+        logCallbacksCount++;
+      }
+    };
+  }
+
+  private long run(String script, int iterations)
+  {
+    final long started = System.nanoTime();
+    jsEngine.evaluate("for (var i = 0; i < " + iterations + "; i++) { " + script + " }");
+    return System.nanoTime() - started;
+  }
+
+  private void benchmark(String name, String script)
+  {
+    run(script, WARMUP_ITERATIONS);
+    final long nanos = run(script, ITERATIONS);
+    // JS loop itself, to be subtracted
+    final long loopNanos = run("", ITERATIONS);
+    Log.i(TAG, name + ": " + ((nanos - loopNanos) / ITERATIONS) + " ns per callback ("
+      + ITERATIONS + " callbacks in " + (nanos / 1000000) + " ms, loop "
+      + (loopNanos / 1000000) + " ms)");
+  }
+
+  @Test
+  public void testLogSystemCallback()
+  {
+    logCallbacksCount = 0;
+    benchmark("LogSystem.logCallback", "console.warn('message');");
+    assertEquals(WARMUP_ITERATIONS + ITERATIONS, logCallbacksCount);
+  }
+
+  @Test
+  public void testEventCallback()
+  {
+    final EventCallback callback = new EventCallback()
+    {
+      @Override
+      public void eventCallback(List<JsValue> params)
+      {
+        eventCallbacksCount++;
+        for (JsValue param : params)
+        {
+          param.dispose();
+        }
+      }
+    };
+
+    try
+    {
+      eventCallbacksCount = 0;
+      jsEngine.setEventCallback("benchmark", callback);
+      benchmark("EventCallback.eventCallback", "_triggerEvent('benchmark');");
+      assertEquals(WARMUP_ITERATIONS + ITERATIONS, eventCallbacksCount);
+    }
+    finally
+    {
+      jsEngine.removeEventCallback("benchmark");
+      callback.dispose();
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.FilterEngine.ContentType;
+import org.adblockplus.libadblockplus.android.MatchesCache;
+import org.junit.Test;
+
+/**
+ * Test for MatchesCache
+ */
+public class MatchesCacheTest extends InstrumentationTestCase
+{
+  private static final String URL = "http://example.com/ad.png";
+  private static final String[] REFERRERS = new String[] { "http://example.org/page?q=1" };
+
+  @Test
+  public void testKey_sameForSameDocument()
+  {
+    assertEquals(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/page" }),
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/page" }));
+  }
+
+  @Test
+  public void testKey_differentForSameHostDifferentPath()
+  {
+    // eg. `@@||example.org/allowed/*$document` matches the first document only
+    assertFalse(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/allowed/page" }).equals(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/other/page" })));
+    assertFalse(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/frame", "http://top.com/a" }).equals(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/frame", "http://top.com/b" })));
+  }
+
+  @Test
+  public void testGetPut_sameHostDifferentPath()
+  {
+    MatchesCache cache = new MatchesCache(64);
+    String allowedKey = MatchesCache.buildKey(URL, ContentType.IMAGE,
+      new String[] { "http://example.org/allowed/page" });
+    String otherKey = MatchesCache.buildKey(URL, ContentType.IMAGE,
+      new String[] { "http://example.org/other/page" });
+
+    cache.put(allowedKey, false, cache.getGeneration());
+    assertEquals(Boolean.FALSE, cache.get(allowedKey));
+    assertNull(cache.get(otherKey));
+  }
+
+  @Test
+  public void testKey_differentForDifferentHost()
+  {
+    assertFalse(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/" }).equals(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://sub.example.org/" })));
+  }
+
+  @Test
+  public void testKey_differentForDifferentChain()
+  {
+    assertFalse(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/" }).equals(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/", "http://top.com/" })));
+    assertFalse(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, null).equals(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, new String[] { "http://example.org/" })));
+  }
+
+  @Test
+  public void testKey_differentForDifferentContentType()
+  {
+    assertFalse(
+      MatchesCache.buildKey(URL, ContentType.IMAGE, REFERRERS).equals(
+      MatchesCache.buildKey(URL, ContentType.SCRIPT, REFERRERS)));
+  }
+
+  @Test
+  public void testGetPut()
+  {
+    MatchesCache cache = new MatchesCache(64);
+    String key = MatchesCache.buildKey(URL, ContentType.IMAGE, REFERRERS);
+    assertNull(cache.get(key));
+
+    cache.put(key, true, cache.getGeneration());
+    assertEquals(Boolean.TRUE, cache.get(key));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    cache.put(key, false, cache.getGeneration());
+    assertEquals(Boolean.FALSE, cache.get(key));
+  }
+
+  @Test
+  public void testInvalidate()
+  {
+    MatchesCache cache = new MatchesCache(64);
+    String key = MatchesCache.buildKey(URL, ContentType.IMAGE, REFERRERS);
+    cache.put(key, true, cache.getGeneration());
+    assertEquals(1, cache.size());
+
+    cache.invalidate();
+    assertEquals(0, cache.size());
+    assertNull(cache.get(key));
+  }
+
+  @Test
+  public void testPut_outdatedGenerationIgnored()
+  {
+    MatchesCache cache = new MatchesCache(64);
+    String key = MatchesCache.buildKey(URL, ContentType.IMAGE, REFERRERS);
+
+    int generation = cache.getGeneration();
+    cache.invalidate(); // eg. filters changed while the decision was made
+    cache.put(key, true, generation);
+
+    assertNull(cache.get(key));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testSizeIsBounded()
+  {
+    MatchesCache cache = new MatchesCache(64);
+    for (int i = 0; i < 1000; i++)
+    {
+      String key = MatchesCache.buildKey(URL + i, ContentType.IMAGE, REFERRERS);
+      cache.put(key, true, cache.getGeneration());
+    }
+    assertTrue(cache.size() <= 64);
+  }
+}
@@ -0,0 +1,155 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.android.MeasuredReadWriteLock;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test for MeasuredReadWriteLock
+ */
+public class MeasuredReadWriteLockTest extends InstrumentationTestCase
+{
+  @Test
+  public void testReadersDoNotWaitForEachOther() throws InterruptedException
+  {
+    final MeasuredReadWriteLock lock = new MeasuredReadWriteLock();
+    lock.readLock().lock();
+    try
+    {
+      final CountDownLatch acquired = new CountDownLatch(1);
+      Thread thread = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          if (lock.readLock().tryLock())
+          {
+            acquired.countDown();
+            lock.readLock().unlock();
+          }
+        }
+      });
+      thread.start();
+      assertTrue(acquired.await(5, TimeUnit.SECONDS));
+      thread.join();
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
+
+    assertEquals(2, lock.readLock().getAcquiredCount());
+    assertEquals(0, lock.readLock().getContendedCount());
+  }
+
+  @Test
+  public void testWaitTimeMeasured() throws InterruptedException
+  {
+    final MeasuredReadWriteLock lock = new MeasuredReadWriteLock();
+    final CountDownLatch started = new CountDownLatch(1);
+
+    lock.writeLock().lock();
+    Thread thread = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        started.countDown();
+        lock.readLock().lock();
+        lock.readLock().unlock();
+      }
+    });
+    try
+    {
+      thread.start();
+      started.await();
+      Thread.sleep(100);
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+    thread.join();
+
+    assertEquals(1, lock.readLock().getAcquiredCount());
+    assertEquals(1, lock.readLock().getContendedCount());
+    assertTrue(lock.readLock().getMaxWaitMillis() >= 50);
+    assertTrue(lock.readLock().getTotalWaitMillis() >= lock.readLock().getMaxWaitMillis());
+  }
+
+  @Test
+  public void testQueuedWriterIsNotStarvedByReaders() throws InterruptedException
+  {
+    final MeasuredReadWriteLock lock = new MeasuredReadWriteLock();
+    final AtomicBoolean stopped = new AtomicBoolean(false);
+    final int readersCount = 4;
+    final CountDownLatch readersStarted = new CountDownLatch(readersCount);
+    final Thread[] readers = new Thread[readersCount];
+
+    // overlapping readers keep the read lock held all the time
+    for (int i = 0; i < readersCount; i++)
+    {
+      readers[i] = new Thread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          readersStarted.countDown();
+          while (!stopped.get())
+          {
+            lock.readLock().lock();
+            try
+            {
+              Thread.sleep(2);
+            }
+            catch (InterruptedException e)
+            {
+              return;
+            }
+            finally
+            {
+              lock.readLock().unlock();
+            }
+          }
+        }
+      });
+      readers[i].start();
+    }
+
+    final CountDownLatch writerAcquired = new CountDownLatch(1);
+    Thread writer = new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        lock.writeLock().lock();
+        writerAcquired.countDown();
+        lock.writeLock().unlock();
+      }
+    });
+    try
+    {
+      readersStarted.await();
+      Thread.sleep(50);
+      writer.start();
+      assertTrue(writerAcquired.await(5, TimeUnit.SECONDS));
+    }
+    finally
+    {
+      stopped.set(true);
+      for (Thread reader : readers)
+      {
+        reader.join();
+      }
+    }
+    writer.join();
+
+    assertEquals(1, lock.writeLock().getAcquiredCount());
+    assertEquals(1, lock.writeLock().getContendedCount());
+  }
+}
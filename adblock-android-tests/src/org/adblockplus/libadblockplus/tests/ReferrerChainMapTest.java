@@ -0,0 +1,149 @@
+package org.adblockplus.libadblockplus.tests;
+
+import android.test.InstrumentationTestCase;
+
+import org.adblockplus.libadblockplus.android.ReferrerChainMap;
+import org.junit.Test;
+
+/**
+ * Test for ReferrerChainMap
+ */
+public class ReferrerChainMapTest extends InstrumentationTestCase
+{
+  private static final String TOP = "http://example.com/";
+  private static final String FRAME = "http://ads.com/frame.html";
+  private static final String NESTED_FRAME = "http://tracker.com/nested.html";
+
+  @Test
+  public void testNoReferrer()
+  {
+    ReferrerChainMap map = new ReferrerChainMap();
+    assertEquals(0, map.getDocumentUrls(null).length);
+  }
+
+  @Test
+  public void testTopDocument()
+  {
+    ReferrerChainMap map = new ReferrerChainMap();
+    map.putDocument(TOP, null);
+
+    String[] chain = map.getDocumentUrls(TOP);
+    assertEquals(1, chain.length);
+    assertEquals(TOP, chain[0]);
+  }
+
+  @Test
+  public void testUnknownReferrer()
+  {
+    ReferrerChainMap map = new ReferrerChainMap();
+    String[] chain = map.getDocumentUrls(TOP);
+    assertEquals(1, chain.length);
+    assertEquals(TOP, chain[0]);
+  }
+
+  @Test
+  public void testUnknownReferrerIsNotRemembered()
+  {
+    ReferrerChainMap map = new ReferrerChainMap(10);
+    map.putDocument(TOP, null);
+    map.putDocument(FRAME, TOP);
+    for (int i = 0; i < 100; i++)
+    {
+      map.getDocumentUrls("http://example.com/unknown" + i);
+    }
+
+    assertEquals(2, map.size());
+    assertEquals(2, map.getDocumentUrls(FRAME).length);
+  }
+
+  @Test
+  public void testNestedFrames()
+  {
+    ReferrerChainMap map = new ReferrerChainMap();
+    map.putDocument(TOP, null);
+    map.putDocument(FRAME, TOP);
+    map.putDocument(NESTED_FRAME, FRAME);
+
+    String[] chain = map.getDocumentUrls(NESTED_FRAME);
+    assertEquals(3, chain.length);
+    assertEquals(NESTED_FRAME, chain[0]);
+    assertEquals(FRAME, chain[1]);
+    assertEquals(TOP, chain[2]);
+  }
+
+  @Test
+  public void testChainIsShared()
+  {
+    ReferrerChainMap map = new ReferrerChainMap();
+    map.putDocument(TOP, null);
+    map.putDocument(FRAME, TOP);
+
+    assertSame(map.getDocumentUrls(FRAME), map.getDocumentUrls(FRAME));
+  }
+
+  @Test
+  public void testCycle()
+  {
+    ReferrerChainMap map = new ReferrerChainMap();
+    map.putDocument(TOP, null);
+    map.putDocument(FRAME, TOP);
+    map.putDocument(TOP, FRAME);
+
+    // already an ancestor of the parent, so the chain is not grown
+    String[] chain = map.getDocumentUrls(TOP);
+    assertEquals(1, chain.length);
+    assertEquals(TOP, chain[0]);
+  }
+
+  @Test
+  public void testChainLengthIsBounded()
+  {
+    ReferrerChainMap map = new ReferrerChainMap();
+    String parent = null;
+    for (int i = 0; i < 100; i++)
+    {
+      String frame = "http://example.com/frame" + i;
+      map.putDocument(frame, parent);
+      parent = frame;
+    }
+
+    String[] chain = map.getDocumentUrls(parent);
+    assertEquals(ReferrerChainMap.MAX_CHAIN_LENGTH, chain.length);
+    assertEquals(parent, chain[0]);
+  }
+
+  @Test
+  public void testTruncatedChainKeepsTopDocument()
+  {
+    ReferrerChainMap map = new ReferrerChainMap();
+    map.putDocument(TOP, null);
+    String parent = TOP;
+    for (int i = 0; i < 100; i++)
+    {
+      String frame = "http://example.com/frame" + i;
+      map.putDocument(frame, parent);
+      parent = frame;
+    }
+
+    // nearest ancestors and the top document are kept, the middle is truncated
+    String[] chain = map.getDocumentUrls(parent);
+    assertEquals(ReferrerChainMap.MAX_CHAIN_LENGTH, chain.length);
+    assertEquals("http://example.com/frame99", chain[0]);
+    assertEquals("http://example.com/frame98", chain[1]);
+    assertEquals(TOP, chain[chain.length - 1]);
+  }
+
+  @Test
+  public void testSizeIsBounded()
+  {
+    ReferrerChainMap map = new ReferrerChainMap(10);
+    for (int i = 0; i < 100; i++)
+    {
+      map.putDocument("http://example.com/page" + i, null);
+    }
+    assertEquals(10, map.size());
+
+    map.clear();
+    assertEquals(0, map.size());
+  }
+}
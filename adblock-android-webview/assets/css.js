@@ -1,21 +1,44 @@
 {
-   {{DEBUG}} console.log('starting injecting css rules');
-   var selectors = JSON.parse({{BRIDGE}}.getElemhideSelectors());
-   {{DEBUG}} console.log('parsed selectors: ' + selectors.length);
-   var head = document.getElementsByTagName("head")[0];
-   var style = document.createElement("style");
-   head.appendChild(style);
-   var sheet = style.sheet ? style.sheet : style.styleSheet;
-   for (var i=0; i<selectors.length; i++)
+   var applyElemhide = function(css, emulationSelectors)
    {
-     if (sheet.insertRule)
+     {{DEBUG}} console.log('starting injecting css rules');
+     var head = document.getElementsByTagName("head")[0];
+     var style = document.createElement("style");
+     // rules are ready to inject, set at once not to recalculate page style for every rule
+     style.textContent = css;
+     head.appendChild(style);
+     // report when the styles are going to be rendered, so drawing can be allowed
+     window.requestAnimationFrame(function()
      {
-       sheet.insertRule(selectors[i] + ' { display: none !important; }', 0);
-     }
-     else
+       {{BRIDGE}}.onElemhideApplied();
+     });
+     {{DEBUG}} console.log('finished injecting css rules');
+
+     if (emulationSelectors.length > 0)
      {
-       sheet.addRule(selectors[i], 'display: none !important;', 0);
+       startElemhideEmulation(emulationSelectors);
      }
+   };
+
+   // never wait for the selectors: apply if ready or let them be pushed when ready
+   if (window.abpPendingElemhide)
+   {
+     // pushed before the script is injected into this document
+     {{DEBUG}} console.log('applying pending elemhide');
+     var pending = window.abpPendingElemhide;
+     delete window.abpPendingElemhide;
+     applyElemhide(pending[0], pending[1]);
+   }
+   else if ({{BRIDGE}}.isElemhideReady())
+   {
+     applyElemhide({{BRIDGE}}.getElemhideGenericCss() + {{BRIDGE}}.getElemhideCss(),
+       JSON.parse({{BRIDGE}}.getElemhideEmulationSelectors()));
+   }
+   else
+   {
+     {{DEBUG}} console.log('elemhide is not ready, waiting to be pushed');
+     // warning: do not rename (invoked by AdblockWebView by function name)
+     window.abpApplyElemhide = applyElemhide;
+     {{BRIDGE}}.requestElemhidePush();
    }
-   {{DEBUG}} console.log('finished injecting css rules');
 }
\ No newline at end of file
@@ -0,0 +1,411 @@
+// element hiding emulation: hides elements matching `:-abp-has(...)` and `:-abp-contains(...)`
+// selectors that can't be applied with CSS, mutated subtrees only are matched again
+var startElemhideEmulation = function(selectors)
+{
+  // max time of a single matching slice (millis)
+  var MAX_SLICE_TIME = 5;
+  // max matching time in a budget period, so matching can't jank scrolling (millis)
+  var MAX_PERIOD_TIME = 50;
+  var BUDGET_PERIOD = 1000;
+  var REPORT_DELAY = 1000;
+  var PSEUDO_PREFIX = ':-abp-';
+
+  var now = function()
+  {
+    return window.performance ? window.performance.now() : Date.now();
+  };
+
+  var findClosingParenthesis = function(text, start)
+  {
+    var depth = 0;
+    for (var i = start; i < text.length; i++)
+    {
+      if (text[i] == '(')
+      {
+        depth++;
+      }
+      else if (text[i] == ')' && --depth == 0)
+      {
+        return i;
+      }
+    }
+    return -1;
+  };
+
+  var startsWithCombinator = function(selector)
+  {
+    return /^[>+~]/.test(selector);
+  };
+
+  // nested selectors are relative to the element they are matched in
+  var scope = function(selector, relative)
+  {
+    return (relative && startsWithCombinator(selector) ? ':scope ' + selector : selector);
+  };
+
+  var toRegExp = function(text)
+  {
+    var match = /^\/(.*)\/([imsu]*)$/.exec(text);
+    if (match)
+    {
+      return new RegExp(match[1], match[2]);
+    }
+    return new RegExp(text.replace(/[-\/\\^$*+?.()|[\]{}]/g, '\\$&'));
+  };
+
+  // returns `null` for plain CSS selector
+  var parseRule = function(selector, relative)
+  {
+    selector = selector.trim();
+    var index = selector.indexOf(PSEUDO_PREFIX);
+    if (index < 0)
+    {
+      return null;
+    }
+
+    var open = selector.indexOf('(', index);
+    var close = (open < 0 ? -1 : findClosingParenthesis(selector, open));
+    if (close < 0)
+    {
+      throw new SyntaxError('Unbalanced parentheses in ' + selector);
+    }
+
+    var prefix = selector.substring(0, index);
+    if (prefix.trim() == '' || /[\s>+~]$/.test(prefix))
+    {
+      prefix += '*';
+    }
+
+    var suffix = selector.substring(close + 1);
+    var rule =
+    {
+      prefix: scope(prefix.trim(), relative),
+      suffix: suffix.trim(),
+      // eg. `div:-abp-has(.ad) > span` hides the spans
+      descendants: /^[\s>+~]/.test(suffix)
+    };
+    if (rule.suffix != '' && !rule.descendants && /[\s>+~]/.test(rule.suffix))
+    {
+      throw new SyntaxError('Unsupported selector after pseudo-class in ' + selector);
+    }
+
+    var name = selector.substring(index + PSEUDO_PREFIX.length, open);
+    var argument = selector.substring(open + 1, close).trim();
+    if (name == 'has')
+    {
+      var nested = parseRule(argument, true);
+      rule.test = function(element)
+      {
+        if (!nested)
+        {
+          return element.querySelector(scope(argument, true)) != null;
+        }
+        var candidates = element.querySelectorAll(nested.prefix);
+        for (var i = 0; i < candidates.length; i++)
+        {
+          if (nested.test(candidates[i]) && getTargets(nested, candidates[i]).length > 0)
+          {
+            return true;
+          }
+        }
+        return false;
+      };
+    }
+    else if (name == 'contains')
+    {
+      var regexp = toRegExp(argument);
+      rule.test = function(element)
+      {
+        return regexp.test(element.textContent);
+      };
+    }
+    else
+    {
+      throw new SyntaxError('Unsupported pseudo-class ' + name + ' in ' + selector);
+    }
+
+    // throws for invalid plain CSS parts
+    document.querySelector(relative ? '*' : rule.prefix);
+    return rule;
+  };
+
+  var getTargets = function(rule, element)
+  {
+    if (rule.suffix == '')
+    {
+      return [element];
+    }
+    if (rule.descendants)
+    {
+      return element.querySelectorAll(scope(rule.suffix, true));
+    }
+    // compound selector, eg. `div:-abp-has(.ad).banner`
+    return (element.matches('*' + rule.suffix) ? [element] : []);
+  };
+
+  var rules = [];
+  for (var i = 0; i < selectors.length; i++)
+  {
+    try
+    {
+      var rule = parseRule(selectors[i], false);
+      if (rule)
+      {
+        rules.push(rule);
+      }
+    }
+    catch (e)
+    {
+      {{DEBUG}} console.log('skipping emulation selector ' + selectors[i] + ': ' + e);
+    }
+  }
+  if (rules.length == 0)
+  {
+    return;
+  }
+
+  // mutated subtrees and their ancestors (the subtree roots included) to be matched,
+  // the ancestors of all the subtrees are coalesced, so each is matched once
+  var pendingRoots = [];
+  var pendingRootsSet = new Set();
+  var pendingAncestors = [];
+  var pendingAncestorsSet = new Set();
+  // matching state is kept between the slices, so matching can be suspended after any candidate
+  var task = null;
+  var scheduled = false;
+  var reportScheduled = false;
+  var periodStarted = now();
+  var periodTime = 0;
+  var totalTime = 0;
+  var hiddenCount = 0;
+
+  var hide = function(element)
+  {
+    if (element.style.getPropertyValue('display') == 'none' &&
+        element.style.getPropertyPriority('display') == 'important')
+    {
+      return;
+    }
+    element.style.setProperty('display', 'none', 'important');
+    hiddenCount++;
+  };
+
+  var matchRule = function(rule, element)
+  {
+    if (rule.test(element))
+    {
+      var targets = getTargets(rule, element);
+      for (var i = 0; i < targets.length; i++)
+      {
+        hide(targets[i]);
+      }
+    }
+  };
+
+  // the ancestors are matched too, as `:-abp-has` and `:-abp-contains`
+  // matching of the ancestors depends on the subtree
+  var enqueue = function(node, subtree)
+  {
+    if (subtree && !pendingRootsSet.has(node))
+    {
+      pendingRootsSet.add(node);
+      pendingRoots.push(node);
+    }
+
+    // the ancestors of an already pending ancestor are pending too
+    for (var ancestor = node;
+         ancestor && !pendingAncestorsSet.has(ancestor);
+         ancestor = ancestor.parentElement)
+    {
+      pendingAncestorsSet.add(ancestor);
+      pendingAncestors.push(ancestor);
+    }
+  };
+
+  var nextTask = function()
+  {
+    if (pendingAncestors.length > 0)
+    {
+      var ancestors = pendingAncestors;
+      pendingAncestors = [];
+      pendingAncestorsSet.clear();
+      return { root: null, candidates: ancestors, ruleIndex: 0, index: 0 };
+    }
+
+    while (pendingRoots.length > 0)
+    {
+      var root = pendingRoots.shift();
+      pendingRootsSet.delete(root);
+      if (document.documentElement.contains(root))
+      {
+        // candidates are the subtree elements matching rule prefix (queried for every rule)
+        return { root: root, candidates: null, ruleIndex: 0, index: 0 };
+      }
+    }
+    return null;
+  };
+
+  // matches a single candidate, returns `false` when the task is finished
+  var step = function(task)
+  {
+    if (task.ruleIndex == rules.length)
+    {
+      return false;
+    }
+
+    var rule = rules[task.ruleIndex];
+    if (task.candidates == null)
+    {
+      task.candidates = task.root.querySelectorAll(rule.prefix);
+    }
+    else if (task.index < task.candidates.length)
+    {
+      var candidate = task.candidates[task.index++];
+      if (task.root || candidate.matches(rule.prefix))
+      {
+        matchRule(rule, candidate);
+      }
+    }
+    else
+    {
+      task.ruleIndex++;
+      task.index = 0;
+      if (task.root)
+      {
+        task.candidates = null;
+      }
+    }
+    return true;
+  };
+
+  var hasPending = function()
+  {
+    return task != null || pendingAncestors.length > 0 || pendingRoots.length > 0;
+  };
+
+  var report = function()
+  {
+    reportScheduled = false;
+    {{BRIDGE}}.onElemhideEmulationProgress({{TOKEN}}, Math.round(totalTime), hiddenCount);
+  };
+
+  var schedule = function(delay)
+  {
+    if (scheduled)
+    {
+      return;
+    }
+    scheduled = true;
+
+    var request = function()
+    {
+      if (window.requestIdleCallback)
+      {
+        window.requestIdleCallback(process, { timeout: BUDGET_PERIOD });
+      }
+      else
+      {
+        process(null);
+      }
+    };
+
+    if (delay > 0)
+    {
+      window.setTimeout(request, delay);
+    }
+    else if (window.requestIdleCallback)
+    {
+      request();
+    }
+    else
+    {
+      window.setTimeout(request, 0);
+    }
+  };
+
+  var process = function(deadline)
+  {
+    scheduled = false;
+    var started = now();
+    if (started - periodStarted >= BUDGET_PERIOD)
+    {
+      periodStarted = started;
+      periodTime = 0;
+    }
+
+    while (true)
+    {
+      var elapsed = now() - started;
+      if (elapsed >= MAX_SLICE_TIME || periodTime + elapsed >= MAX_PERIOD_TIME ||
+          (deadline && !deadline.didTimeout && deadline.timeRemaining() <= 0))
+      {
+        break;
+      }
+
+      if (task == null)
+      {
+        task = nextTask();
+        if (task == null)
+        {
+          break;
+        }
+      }
+      if (!step(task))
+      {
+        task = null;
+      }
+    }
+
+    var spent = now() - started;
+    periodTime += spent;
+    totalTime += spent;
+
+    if (hasPending())
+    {
+      // continue in the next budget period if this one is spent
+      schedule(periodTime >= MAX_PERIOD_TIME ? BUDGET_PERIOD - (now() - periodStarted) : 0);
+    }
+    else if (!reportScheduled)
+    {
+      reportScheduled = true;
+      window.setTimeout(report, REPORT_DELAY);
+    }
+  };
+
+  // style changes are attributes mutations, so hiding does not trigger matching again
+  new MutationObserver(function(mutations)
+  {
+    for (var i = 0; i < mutations.length; i++)
+    {
+      var mutation = mutations[i];
+      if (mutation.type == 'characterData')
+      {
+        if (mutation.target.parentElement)
+        {
+          enqueue(mutation.target.parentElement, false);
+        }
+        continue;
+      }
+
+      var added = false;
+      for (var j = 0; j < mutation.addedNodes.length; j++)
+      {
+        if (mutation.addedNodes[j].nodeType == Node.ELEMENT_NODE)
+        {
+          enqueue(mutation.addedNodes[j], true);
+          added = true;
+        }
+      }
+      if (!added && mutation.target.nodeType == Node.ELEMENT_NODE)
+      {
+        // removed or text nodes changed, ancestors only can be matched now
+        enqueue(mutation.target, false);
+      }
+    }
+    schedule(0);
+  }).observe(document, { childList: true, subtree: true, characterData: true });
+
+  {{DEBUG}} console.log('started elemhide emulation with ' + rules.length + ' rules');
+  enqueue(document.documentElement, true);
+  schedule(0);
+};
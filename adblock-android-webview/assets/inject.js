@@ -1,11 +1,12 @@
 var hideElements = function()
 {
-  // no need to invoke if already invoked on another event
-  if ({{BRIDGE}}.isElementsHidden())
+  // no need to invoke if already invoked on another event (in this document)
+  if (window.abpElementsHidden)
   {
     {{DEBUG}} console.log('already hidden, exiting');
     return;
   }
+  window.abpElementsHidden = true;
 
   // hide using element visibility (to be replaced with script body)
   {{HIDE}}
@@ -13,32 +14,46 @@ var hideElements = function()
   {{BRIDGE}}.setElementsHidden(true); // set flag not to do it again
 };
 
-if ({{BRIDGE}}.getAddDomListener() && document.readyState != 'complete')
+// can be evaluated many times for the same navigation until it is reported to be injected.
+// Reported on every evaluation, returns `false` if the script is injected
+// for the previous navigation or into the previous document
+if ({{BRIDGE}}.onScriptInjected({{TOKEN}}, document.URL, document.readyState))
 {
-  {{BRIDGE}}.setAddDomListener(false);
-
-  // onreadystatechange event
-  document.onreadystatechange = function()
+  // listeners are added once per document
+  if (window.abpInjectedToken !== {{TOKEN}})
   {
-    {{DEBUG}} console.log('onreadystatechange() event fired (' + document.readyState + ')')
-    if (document.readyState == 'interactive')
+    window.abpInjectedToken = {{TOKEN}};
+
+    if (document.readyState == 'loading')
+    {
+      // onreadystatechange event
+      document.onreadystatechange = function()
+      {
+        {{DEBUG}} console.log('onreadystatechange() event fired (' + document.readyState + ')')
+        if (document.readyState == 'interactive')
+        {
+          hideElements();
+        }
+      }
+
+      // load event
+      window.addEventListener('load', function(event)
+      {
+        {{DEBUG}} console.log('load() event fired');
+        hideElements();
+      });
+
+      // DOMContentLoaded event
+      document.addEventListener('DOMContentLoaded', function()
+      {
+        {{DEBUG}} console.log('DOMContentLoaded() event fired');
+        hideElements();
+      }, false);
+    }
+    else
     {
+      // DOM is already loaded
       hideElements();
     }
   }
-
-   // load event
-  window.addEventListener('load', function(event)
-  {
-    {{DEBUG}} console.log('load() event fired');
-    hideElements();
-  });
-
-  // DOMContentLoaded event
-  document.addEventListener('DOMContentLoaded', function()
-  {
-    {{DEBUG}} console.log('DOMContentLoaded() event fired');
-    hideElements();
-  }, false);
-
 };
\ No newline at end of file
@@ -27,6 +27,7 @@ import android.net.http.SslError;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.KeyEvent;
@@ -50,17 +51,23 @@ import org.adblockplus.libadblockplus.FilterEngine;
 import org.adblockplus.libadblockplus.Subscription;
 import org.adblockplus.libadblockplus.android.AdblockEngine;
 import org.adblockplus.libadblockplus.android.AdblockEngineProvider;
+import org.adblockplus.libadblockplus.android.ConcurrentEngineProvider;
+import org.adblockplus.libadblockplus.android.ContentTypeClassifier;
+import org.adblockplus.libadblockplus.android.ElemhideSelectorsCache;
+import org.adblockplus.libadblockplus.android.EngineTaskExecutor;
+import org.adblockplus.libadblockplus.android.ReferrerChainMap;
 import org.adblockplus.libadblockplus.android.SingleInstanceEngineProvider;
 import org.adblockplus.libadblockplus.android.Utils;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Pattern;
+import java.util.concurrent.locks.Lock;
 
 /**
  * WebView with ad blocking
@@ -71,47 +78,77 @@ public class AdblockWebView extends WebView
 
   /**
    * Default (in some conditions) start redraw delay after DOM modified with injected JS (millis)
+   * @deprecated drawing is allowed as soon as the page reports the styles are applied,
+   *             no extra delay is used by default (see `setAllowDrawDelay(int)`)
    */
+  @Deprecated
   public static final int ALLOW_DRAW_DELAY = 200;
-  /*
-     The value could be different for devices and completely unclear why we need it and
-     how to measure actual value
-  */
+
+  /**
+   * Default max time to prevent drawing while waiting for the injected styles to be applied (millis)
+   */
+  public static final int DEFAULT_MAX_DRAW_GATE_TIME = 1000;
 
   protected static final String HEADER_REFERRER = "Referer";
   protected static final String HEADER_REQUESTED_WITH = "X-Requested-With";
   protected static final String HEADER_REQUESTED_WITH_XMLHTTPREQUEST = "XMLHttpRequest";
 
-  private static final String BRIDGE_TOKEN = "{{BRIDGE}}";
-  private static final String DEBUG_TOKEN = "{{DEBUG}}";
-  private static final String HIDE_TOKEN = "{{HIDE}}";
   private static final String BRIDGE = "jsBridge";
   private static final String[] EMPTY_ARRAY = {};
   private static final String EMPTY_ELEMHIDE_ARRAY_STRING = "[]";
+  private static final String EMPTY_ELEMHIDE_CSS_STRING = "";
+  private static final String EMPTY_ELEMHIDE_EMULATION_SELECTORS_STRING = "[]";
+  // defined (and consumed) in injected JS (css.js)
+  private static final String ELEMHIDE_PUSH_FUNCTION = "window.abpApplyElemhide";
+  private static final String ELEMHIDE_PENDING_VARIABLE = "window.abpPendingElemhide";
 
-  private static final Pattern RE_JS = Pattern.compile("\\.js$", Pattern.CASE_INSENSITIVE);
-  private static final Pattern RE_CSS = Pattern.compile("\\.css$", Pattern.CASE_INSENSITIVE);
-  private static final Pattern RE_IMAGE = Pattern.compile("\\.(?:gif|png|jpe?g|bmp|ico)$", Pattern.CASE_INSENSITIVE);
-  private static final Pattern RE_FONT = Pattern.compile("\\.(?:ttf|woff)$", Pattern.CASE_INSENSITIVE);
-  private static final Pattern RE_HTML = Pattern.compile("\\.html?$", Pattern.CASE_INSENSITIVE);
+  private static final ContentTypeClassifier CONTENT_TYPE_CLASSIFIER = new ContentTypeClassifier();
 
   private volatile boolean addDomListener = true;
+  private boolean injectOnCommit;
+  // incremented for every navigation, injected script reports it back when injected
+  private volatile int navigationToken;
+  private volatile int injectedToken = -1;
+  // fragment-less URLs of the document being loaded and the previous one
+  private volatile String loadingDocumentUrl;
+  private volatile String previousDocumentUrl;
+  private int drawPreventedToken = -1;
+  private int scriptEvaluationsCount;
   private boolean adblockEnabled = true;
   private boolean debugMode;
   private AdblockEngineProvider provider;
   private Integer loadError;
-  private int allowDrawDelay = ALLOW_DRAW_DELAY;
+  private int allowDrawDelay = 0;
+  private int maxDrawGateTime = DEFAULT_MAX_DRAW_GATE_TIME;
+  private volatile long preventDrawingStartedMillis;
+  private volatile long lastBlankedMillis = -1;
   private WebChromeClient extWebChromeClient;
   private WebViewClient extWebViewClient;
   private WebViewClient intWebViewClient;
-  private Map<String, String> url2Referrer = Collections.synchronizedMap(new HashMap<String, String>());
+  private final ReferrerChainMap referrerChains = new ReferrerChainMap();
   private String url;
-  private String injectJs;
-  private CountDownLatch elemHideLatch;
-  private String elemHideSelectorsString;
-  private Object elemHideThreadLockObject = new Object();
-  private ElemHideThread elemHideThread;
-  private boolean loading;
+  private volatile PageContext pageContext;
+  private ContentScriptCache.ContentScript injectJs;
+  private volatile CountDownLatch elemHideLatch;
+  private final Object elemHidePushLockObject = new Object();
+  private boolean elemHidePushRequested;
+  private volatile long elemHideReadyMillis;
+  private volatile long elemHideApplyLatencyMillis = -1;
+  private String elemHideCssString;
+  private String elemHideGenericCssString;
+  // JSON array
+  private String elemHideEmulationSelectorsString;
+  private volatile long elemHideEmulationTimeMillis;
+  private volatile int elemHideEmulationHiddenCount;
+  private Object elemHideTaskLockObject = new Object();
+  private ElemHideTask elemHideTask;
+  // submitted tasks not exited yet and runnable to run when all of them exit
+  private int runningElemHideTasksCount;
+  private Runnable elemHideTasksExitedRunnable;
+  private final Object prefetchLockObject = new Object();
+  private PageContext prefetchedPageContext;
+  private Future<?> prefetchFuture;
+  private volatile boolean loading;
   private volatile boolean elementsHidden = false;
   private final Handler handler = new Handler();
 
@@ -140,7 +177,9 @@ public class AdblockWebView extends WebView
   /**
    * Warning: do not rename (used in injected JS by method name)
    * @param value set if one need to set DOM listener
+   * @deprecated injected script reports it's injected with `onScriptInjected(int, String, String)`
    */
+  @Deprecated
   @JavascriptInterface
   public void setAddDomListener(boolean value)
   {
@@ -148,12 +187,142 @@ public class AdblockWebView extends WebView
     this.addDomListener = value;
   }
 
+  /**
+   * @deprecated see `setAddDomListener(boolean)`
+   */
+  @Deprecated
   @JavascriptInterface
   public boolean getAddDomListener()
   {
     return addDomListener;
   }
 
+  public boolean isInjectOnCommit()
+  {
+    return injectOnCommit;
+  }
+
+  /**
+   * Inject the script once the page is committed (`onPageCommitVisible`) instead of
+   * on loading progress changes. Works on API 23+ only, ignored on older platforms.
+   * @param injectOnCommit inject on commit
+   */
+  public void setInjectOnCommit(boolean injectOnCommit)
+  {
+    this.injectOnCommit = injectOnCommit;
+  }
+
+  private boolean isInjectingOnCommit()
+  {
+    return injectOnCommit && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+  }
+
+  /**
+   * Get how many times the script was evaluated for the current (or last) page
+   * @return evaluations count
+   */
+  public int getScriptEvaluationsCount()
+  {
+    return scriptEvaluationsCount;
+  }
+
+  /**
+   * Invoked from injected JS when it's evaluated in the document
+   * @param token navigation token the script was injected with
+   * @param documentUrl document URL
+   * @param readyState document ready state
+   * @return `false` if the script is injected for the previous navigation
+   *         or into the previous document
+   */
+  // warning: do not rename (used in injected JS by method name)
+  @JavascriptInterface
+  public boolean onScriptInjected(int token, String documentUrl, String readyState)
+  {
+    if (token != navigationToken)
+    {
+      d("Script injected for the previous navigation");
+      return false;
+    }
+
+    // the script can be evaluated in the previous document until the new one is committed.
+    // The new document URL can differ from the loaded one (redirects, fragments),
+    // so only the previous document URL is rejected. On reload it's the same URL,
+    // but the previous document is already complete while the new one is loading
+    final String strippedUrl = PageContext.stripFragment(documentUrl);
+    if (strippedUrl.equals(previousDocumentUrl)
+        && (!strippedUrl.equals(loadingDocumentUrl)
+            || (loading && "complete".equals(readyState))))
+    {
+      d("Script injected into the previous document " + documentUrl);
+      return false;
+    }
+
+    d("Script injected into " + documentUrl + " (" + readyState + ")");
+    injectedToken = token;
+    return true;
+  }
+
+  /**
+   * Invoked from injected JS when element hiding emulation selectors are matched
+   * (throttled, on page loaded and on page changes)
+   * @param token navigation token the script is injected for
+   * @param timeMillis total time spent for matching in the page
+   * @param hiddenCount total count of the elements hidden in the page
+   */
+  // warning: do not rename (used in injected JS by method name)
+  @JavascriptInterface
+  public void onElemhideEmulationProgress(int token, int timeMillis, int hiddenCount)
+  {
+    if (token != navigationToken)
+    {
+      return;
+    }
+
+    elemHideEmulationTimeMillis = timeMillis;
+    elemHideEmulationHiddenCount = hiddenCount;
+    d("Elemhide emulation: " + hiddenCount + " elements hidden in " + timeMillis + " ms");
+  }
+
+  /**
+   * Get time spent for matching element hiding emulation selectors in the current page.
+   * Matching is done in idle time in small slices bounded by time budget per second
+   * not to jank scrolling.
+   * @return time in milliseconds
+   */
+  public long getElemhideEmulationTimeMillis()
+  {
+    return elemHideEmulationTimeMillis;
+  }
+
+  /**
+   * Get count of the elements hidden with element hiding emulation selectors in the current page
+   * @return hidden elements count
+   */
+  public int getElemhideEmulationHiddenCount()
+  {
+    return elemHideEmulationHiddenCount;
+  }
+
+  private void injectScript()
+  {
+    if (injectedToken == navigationToken || loadError != null || injectJs == null)
+    {
+      return;
+    }
+
+    scriptEvaluationsCount++;
+    d("Injecting script (" + scriptEvaluationsCount + ")");
+    runScript(injectJs.build(navigationToken));
+
+    // prevent drawing once per navigation, otherwise the page is blanked again on every
+    // progress change until the injected script is acknowledged
+    if (allowDraw && loading && drawPreventedToken != navigationToken)
+    {
+      drawPreventedToken = navigationToken;
+      startPreventDrawing();
+    }
+  }
+
   public boolean isAdblockEnabled()
   {
     return adblockEnabled;
@@ -219,14 +388,6 @@ public class AdblockWebView extends WebView
     Log.e(TAG, message);
   }
 
-  private String readScriptFile(String filename) throws IOException
-  {
-    return Utils
-      .readAssetAsString(getContext(), filename)
-      .replace(BRIDGE_TOKEN, BRIDGE)
-      .replace(DEBUG_TOKEN, (debugMode ? "" : "//"));
-  }
-
   private void runScript(String script)
   {
     d("runScript started");
@@ -552,23 +713,10 @@ public class AdblockWebView extends WebView
     {
       d("Loading progress=" + newProgress + "%");
 
-      // addDomListener is changed to 'false' in `setAddDomListener` invoked from injected JS
-      if (getAddDomListener() && loadError == null && injectJs != null)
-      {
-        d("Injecting script");
-        runScript(injectJs);
-
-        if (allowDraw && loading)
-        {
-          startPreventDrawing();
-        }
-      }
-
-      // workaround for the issue: https://issues.adblockplus.org/ticket/5303
-      if (newProgress == 100 && !allowDraw)
+      // injected until the script reports it's injected for current navigation
+      if (!isInjectingOnCommit())
       {
-        w("Workaround for the issue #5303");
-        stopPreventDrawing();
+        injectScript();
       }
 
       if (extWebChromeClient != null)
@@ -598,8 +746,8 @@ public class AdblockWebView extends WebView
   }
 
   /**
-   * Set start redraw delay after DOM modified with injected JS
-   * (used to prevent flickering after 'DOM ready')
+   * Set extra redraw delay after the page reported the injected styles are applied
+   * (used to prevent flickering after 'DOM ready'), `0` by default
    * @param allowDrawDelay delay (in millis)
    */
   public void setAllowDrawDelay(int allowDrawDelay)
@@ -612,6 +760,35 @@ public class AdblockWebView extends WebView
     this.allowDrawDelay = allowDrawDelay;
   }
 
+  public int getMaxDrawGateTime()
+  {
+    return maxDrawGateTime;
+  }
+
+  /**
+   * Set max time to prevent drawing while waiting for the injected styles to be applied
+   * (eg. if JS is failed or DOM events are not fired)
+   * @param maxDrawGateTime max time (in millis)
+   */
+  public void setMaxDrawGateTime(int maxDrawGateTime)
+  {
+    if (maxDrawGateTime < 0)
+    {
+      throw new IllegalArgumentException("Negative value is not allowed");
+    }
+
+    this.maxDrawGateTime = maxDrawGateTime;
+  }
+
+  /**
+   * Get how long drawing was prevented on the last page
+   * @return time in milliseconds or `-1` if drawing was not prevented yet
+   */
+  public long getLastBlankedMillis()
+  {
+    return lastBlankedMillis;
+  }
+
   @Override
   public void setWebViewClient(WebViewClient client)
   {
@@ -621,8 +798,9 @@ public class AdblockWebView extends WebView
 
   private void clearReferrers()
   {
-    d("Clearing referrers");
-    url2Referrer.clear();
+    d("Clearing referrers (" + referrerChains.size() + " documents, "
+      + referrerChains.getHitCount() + " hits, " + referrerChains.getMissCount() + " misses)");
+    referrerChains.clear();
   }
 
   /**
@@ -634,14 +812,22 @@ public class AdblockWebView extends WebView
     @Override
     public boolean shouldOverrideUrlLoading(WebView view, String url)
     {
+      boolean override;
       if (extWebViewClient != null)
       {
-        return extWebViewClient.shouldOverrideUrlLoading(view, url);
+        override = extWebViewClient.shouldOverrideUrlLoading(view, url);
       }
       else
       {
-        return super.shouldOverrideUrlLoading(view, url);
+        override = super.shouldOverrideUrlLoading(view, url);
+      }
+
+      if (!override)
+      {
+        // the page is going to be loaded, start getting elemhide selectors before it's started
+        prefetch(url);
       }
+      return override;
     }
 
     @Override
@@ -664,10 +850,41 @@ public class AdblockWebView extends WebView
       }
     }
 
+    // invoked on API 23+ only
+    @Override
+    @TargetApi(Build.VERSION_CODES.M)
+    public void onPageCommitVisible(WebView view, String url)
+    {
+      // injected before the commit means injected into the previous document
+      if (injectedToken == navigationToken)
+      {
+        d("Script was injected before the commit, injecting again");
+        injectedToken = -1;
+      }
+
+      if (isInjectingOnCommit())
+      {
+        injectScript();
+      }
+
+      if (extWebViewClient != null)
+      {
+        extWebViewClient.onPageCommitVisible(view, url);
+      }
+      else
+      {
+        super.onPageCommitVisible(view, url);
+      }
+    }
+
     @Override
     public void onPageFinished(WebView view, String url)
     {
+      d("Page finished, script evaluated " + scriptEvaluationsCount + " time(s)");
       loading = false;
+
+      // the document could be complete before acknowledging the injected script
+      injectScript();
       if (extWebViewClient != null)
       {
         extWebViewClient.onPageFinished(view, url);
@@ -833,122 +1050,142 @@ public class AdblockWebView extends WebView
       WebView webview, String url, boolean isMainFrame,
       boolean isXmlHttpRequest, String[] referrerChainArray)
     {
-      synchronized (provider.getEngineLock())
+      FilterEngine.ContentType contentType = (isXmlHttpRequest
+        ? FilterEngine.ContentType.XMLHTTPREQUEST
+        : CONTENT_TYPE_CLASSIFIER.classify(url, null));
+      return shouldInterceptRequest(webview, url, isMainFrame, contentType, referrerChainArray);
+    }
+
+    protected WebResourceResponse shouldInterceptRequest(
+      WebView webview, final String url, final boolean isMainFrame,
+      final FilterEngine.ContentType contentType, final String[] referrerChainArray)
+    {
+      // if dispose() was invoke, but the page is still loading then just let it go
+      if (provider.getCounter() == 0)
       {
-        // if dispose() was invoke, but the page is still loading then just let it go
-        if (provider.getCounter() == 0)
-        {
-          e("FilterEngine already disposed, allow loading");
+        e("FilterEngine already disposed, allow loading");
 
-          // allow loading by returning null
-          return null;
-        }
-        else
-        {
-          provider.waitForReady();
-        }
+        // allow loading by returning null
+        return null;
+      }
+      else
+      {
+        // should not be invoked while holding the lock
+        provider.waitForReady();
+      }
 
-        if (isMainFrame)
+      return runWithEngine(new EngineAction<WebResourceResponse>()
+      {
+        @Override
+        public WebResourceResponse run(AdblockEngine engine)
         {
-          // never blocking main frame requests, just subrequests
-          w(url + " is main frame, allow loading");
-
-          // allow loading by returning null
-          return null;
+          return interceptRequest(engine, url, isMainFrame, contentType, referrerChainArray);
         }
+      });
+    }
 
-        // whitelisted
-        if (provider.getEngine().isDomainWhitelisted(url, referrerChainArray))
-        {
-          w(url + " domain is whitelisted, allow loading");
+    // invoked while the engine can't be changed or disposed
+    private WebResourceResponse interceptRequest(
+      AdblockEngine engine, String url, boolean isMainFrame,
+      FilterEngine.ContentType contentType, String[] referrerChainArray)
+    {
+      if (engine == null)
+      {
+        e("FilterEngine already disposed, allow loading");
 
-          // allow loading by returning null
-          return null;
-        }
+        // allow loading by returning null
+        return null;
+      }
 
-        if (provider.getEngine().isDocumentWhitelisted(url, referrerChainArray))
-        {
-          w(url + " document is whitelisted, allow loading");
+      if (isMainFrame)
+      {
+        // never blocking main frame requests, just subrequests
+        w(url + " is main frame, allow loading");
 
-          // allow loading by returning null
-          return null;
-        }
+        // allow loading by returning null
+        return null;
+      }
 
-        // determine the content
-        FilterEngine.ContentType contentType;
-        if (isXmlHttpRequest)
-        {
-          contentType = FilterEngine.ContentType.XMLHTTPREQUEST;
-        }
-        else
-        {
-          if (RE_JS.matcher(url).find())
-          {
-            contentType = FilterEngine.ContentType.SCRIPT;
-          }
-          else if (RE_CSS.matcher(url).find())
-          {
-            contentType = FilterEngine.ContentType.STYLESHEET;
-          }
-          else if (RE_IMAGE.matcher(url).find())
-          {
-            contentType = FilterEngine.ContentType.IMAGE;
-          }
-          else if (RE_FONT.matcher(url).find())
-          {
-            contentType = FilterEngine.ContentType.FONT;
-          }
-          else if (RE_HTML.matcher(url).find())
-          {
-            contentType = FilterEngine.ContentType.SUBDOCUMENT;
-          }
-          else
-          {
-            contentType = FilterEngine.ContentType.OTHER;
-          }
-        }
+      // page-wide decisions are made once per navigation
+      final PageContext page = pageContext;
+      if (page != null && page.isWhitelisted(engine))
+      {
+        w(url + " page " + page.getUrl() + " is whitelisted, allow loading");
 
-        // check if we should block
-        if (provider.getEngine().matches(url, contentType, referrerChainArray))
-        {
-          w("Blocked loading " + url);
+        // allow loading by returning null
+        return null;
+      }
 
-          // if we should block, return empty response which results in 'errorLoading' callback
-          return new WebResourceResponse("text/plain", "UTF-8", null);
-        }
+      // whitelisted
+      if (engine.isDomainWhitelisted(url, referrerChainArray))
+      {
+        w(url + " domain is whitelisted, allow loading");
+
+        // allow loading by returning null
+        return null;
+      }
 
-        d("Allowed loading " + url);
+      // main frame document whitelisting is already checked above
+      if ((page == null || !page.isMainFrameResource(referrerChainArray))
+        && engine.isDocumentWhitelisted(url, referrerChainArray))
+      {
+        w(url + " document is whitelisted, allow loading");
 
-        // continue by returning null
+        // allow loading by returning null
         return null;
       }
+
+      // check if we should block
+      if (engine.matches(url, contentType, referrerChainArray))
+      {
+        if (debugMode)
+        {
+          w("Blocked loading " + url
+            + (page != null && !page.isFirstParty(url) ? " (third-party)" : ""));
+        }
+
+        // if we should block, return empty response which results in 'errorLoading' callback
+        return new WebResourceResponse("text/plain", "UTF-8", null);
+      }
+
+      d("Allowed loading " + url);
+
+      // continue by returning null
+      return null;
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     @Override
     public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request)
     {
-      // here we just trying to fill url -> referrer map
-      // blocking/allowing loading will happen in `shouldInterceptRequest(WebView,String)`
+      // here we just trying to fill documents chains
+      // blocking/allowing loading will happen in `shouldInterceptRequest(WebView,String,...)`
       String url = request.getUrl().toString();
 
-      boolean isXmlHttpRequest =
-        request.getRequestHeaders().containsKey(HEADER_REQUESTED_WITH) &&
-          HEADER_REQUESTED_WITH_XMLHTTPREQUEST.equals(
-            request.getRequestHeaders().get(HEADER_REQUESTED_WITH));
+      // classified once by headers and URL path extension
+      FilterEngine.ContentType contentType =
+        CONTENT_TYPE_CLASSIFIER.classify(url, request.getRequestHeaders());
 
       String referrer = request.getRequestHeaders().get(HEADER_REFERRER);
       String[] referrers;
 
+      if (request.isForMainFrame())
+      {
+        // top document of the chains
+        referrerChains.putDocument(url, null);
+      }
+
       if (referrer != null)
       {
         d("Header referrer for " + url + " is " + referrer);
-        url2Referrer.put(url, referrer);
 
-        referrers = new String[]
-          {
-            referrer
-          };
+        // full chain up to the top document for nested frames
+        referrers = referrerChains.getDocumentUrls(referrer);
+
+        if (contentType == FilterEngine.ContentType.SUBDOCUMENT)
+        {
+          referrerChains.putDocument(url, referrer);
+        }
       }
       else
       {
@@ -956,7 +1193,7 @@ public class AdblockWebView extends WebView
         referrers = EMPTY_ARRAY;
       }
 
-      return shouldInterceptRequest(view, url, request.isForMainFrame(), isXmlHttpRequest, referrers);
+      return shouldInterceptRequest(view, url, request.isForMainFrame(), contentType, referrers);
     }
   }
 
@@ -972,156 +1209,395 @@ public class AdblockWebView extends WebView
     applyAdblockEnabled();
   }
 
-  private class ElemHideThread extends Thread
+  private class ElemHideTask implements Runnable
   {
-    private String selectorsString;
+    private String cssString;
+    private String genericCssString;
+    private String emulationSelectorsString;
+    private final PageContext page;
     private CountDownLatch finishedLatch;
+    private AtomicBoolean isStarted;
     private AtomicBoolean isFinished;
     private AtomicBoolean isCancelled;
+    private volatile Future<?> future;
 
-    public ElemHideThread(CountDownLatch finishedLatch)
+    public ElemHideTask(CountDownLatch finishedLatch, PageContext page)
     {
       this.finishedLatch = finishedLatch;
+      this.page = page;
+      isStarted = new AtomicBoolean(false);
       isFinished = new AtomicBoolean(false);
       isCancelled = new AtomicBoolean(false);
     }
 
+    public void setFuture(Future<?> future)
+    {
+      this.future = future;
+    }
+
     @Override
     public void run()
     {
-      synchronized (provider.getEngineLock())
+      if (!isStarted.compareAndSet(false, true))
+      {
+        // cancelled before started, exited in `cancel()`
+        return;
+      }
+
+      // finished with empty selectors if failed to get them
+      cssString = EMPTY_ELEMHIDE_CSS_STRING;
+      genericCssString = EMPTY_ELEMHIDE_CSS_STRING;
+      emulationSelectorsString = EMPTY_ELEMHIDE_EMULATION_SELECTORS_STRING;
+
+      try
       {
-        try
+        if (isCancelled.get())
+        {
+          // superseded while waiting in the queue
+          return;
+        }
+
+        if (provider.getCounter() == 0)
+        {
+          w("FilterEngine already disposed");
+        }
+        else
         {
-          if (provider.getCounter() == 0)
+          // should not be invoked while holding the lock
+          provider.waitForReady();
+          if (isCancelled.get())
           {
-            w("FilterEngine already disposed");
-            selectorsString = EMPTY_ELEMHIDE_ARRAY_STRING;
+            return;
           }
-          else
-          {
-            provider.waitForReady();
-            String[] referrers = new String[]
-              {
-                url
-              };
 
-            List<Subscription> subscriptions = provider
-              .getEngine()
-              .getFilterEngine()
-              .getListedSubscriptions();
-
-            try
+          runWithEngine(new EngineAction<Void>()
+          {
+            @Override
+            public Void run(AdblockEngine engine)
             {
-              d("Listed subscriptions: " + subscriptions.size());
-              if (debugMode)
+              if (engine == null)
               {
-                for (Subscription eachSubscription : subscriptions)
-                {
-                  d("Subscribed to "
-                    + (eachSubscription.isDisabled() ? "disabled" : "enabled")
-                    + " " + eachSubscription);
-                }
+                w("FilterEngine already disposed");
               }
-            }
-            finally
-            {
-              for (Subscription eachSubscription : subscriptions)
+              else
               {
-                eachSubscription.dispose();
+                getSelectors(engine);
               }
+              return null;
             }
-
-            final String domain = provider.getEngine().getFilterEngine().getHostFromURL(url);
-            if (domain == null)
-            {
-              e("Failed to extract domain from " + url);
-              selectorsString = EMPTY_ELEMHIDE_ARRAY_STRING;
-            }
-            else
-            {
-              d("Requesting elemhide selectors from AdblockEngine for " + url + " in " + this);
-              List<String> selectors = provider
-                .getEngine()
-                .getElementHidingSelectors(url, domain, referrers);
-
-              d("Finished requesting elemhide selectors, got " + selectors.size() + " in " + this);
-              selectorsString = Utils.stringListToJsonArray(selectors);
-            }
-          }
+          });
+        }
+      }
+      catch (RuntimeException e)
+      {
+        e("Failed to get elemhide selectors for " + page.getUrl(), e);
+        cssString = EMPTY_ELEMHIDE_CSS_STRING;
+        genericCssString = EMPTY_ELEMHIDE_CSS_STRING;
+        emulationSelectorsString = EMPTY_ELEMHIDE_EMULATION_SELECTORS_STRING;
+      }
+      finally
+      {
+        if (isCancelled.get())
+        {
+          w("This task is cancelled, exiting silently " + this);
         }
-        finally
+        else
         {
-          if (isCancelled.get())
-          {
-            w("This thread is cancelled, exiting silently " + this);
-          }
-          else
-          {
-            finish(selectorsString);
-          }
+          finish(cssString, genericCssString, emulationSelectorsString);
         }
+        onElemHideTaskExited(this);
       }
     }
 
-    private void onFinished()
+    private void getSelectors(final AdblockEngine engine)
     {
-      finishedLatch.countDown();
-      synchronized (finishedRunnableLockObject)
+      cssString = EMPTY_ELEMHIDE_CSS_STRING;
+      genericCssString = EMPTY_ELEMHIDE_CSS_STRING;
+      emulationSelectorsString = EMPTY_ELEMHIDE_EMULATION_SELECTORS_STRING;
+
+      if (debugMode)
       {
-        if (finishedRunnable != null)
+        logListedSubscriptions(engine);
+      }
+
+      final String domain = page.getHost();
+      if (domain == null)
+      {
+        e("Failed to extract domain from " + page.getUrl());
+        return;
+      }
+
+      // whitelisting decisions are shared with subresources requests
+      if (page.isElemhideDisabled(engine))
+      {
+        d("Elemhide is whitelisted for " + page.getUrl());
+        return;
+      }
+
+      d("Requesting elemhide selectors from AdblockEngine for " + page.getUrl() + " in " + this);
+
+      // generic stylesheet is built once and shared by all the pages,
+      // only domain specific selectors are got for the page
+      genericCssString = engine.getGenericElementHidingCss();
+      if (isCancelled.get())
+      {
+        return;
+      }
+      cssString = engine.getDomainElementHidingCss(domain);
+      if (isCancelled.get())
+      {
+        return;
+      }
+
+      // matched in the page by injected JS
+      final List<String> emulationSelectors = engine.getElementHidingEmulationSelectors(domain);
+      if (!emulationSelectors.isEmpty())
+      {
+        emulationSelectorsString = new JSONArray(emulationSelectors).toString();
+      }
+
+      if (debugMode)
+      {
+        ElemhideSelectorsCache cache = engine.getElemhideCache();
+        if (cache != null)
         {
-          finishedRunnable.run();
+          d("Elemhide cache: " + cache.getCount() + " domains, " + cache.getSizeBytes() + " bytes, "
+            + cache.getHitCount() + " hits, " + cache.getMissCount() + " misses");
         }
       }
+
+      if (debugMode)
+      {
+        EngineTaskExecutor executor = getTaskExecutor();
+        d("Engine tasks: " + executor.getQueueSize() + " queued, "
+          + executor.getCompletedCount() + " completed, "
+          + executor.getCancelledCount() + " cancelled, average queue time "
+          + executor.getAverageQueueMillis() + " ms, average run time "
+          + executor.getAverageRunMillis() + " ms");
+      }
+
+      d("Finished requesting elemhide selectors in " + this);
     }
 
-    private void finish(String result)
+    private void logListedSubscriptions(final AdblockEngine engine)
     {
-      isFinished.set(true);
-      d("Setting elemhide string " + result.length() + " bytes");
-      elemHideSelectorsString = result;
-      onFinished();
-    }
+      List<Subscription> subscriptions = engine
+        .getFilterEngine()
+        .getListedSubscriptions();
 
-    private final Object finishedRunnableLockObject = new Object();
-    private Runnable finishedRunnable;
+      try
+      {
+        d("Listed subscriptions: " + subscriptions.size());
+        for (Subscription eachSubscription : subscriptions)
+        {
+          d("Subscribed to "
+            + (eachSubscription.isDisabled() ? "disabled" : "enabled")
+            + " " + eachSubscription);
+        }
+      }
+      finally
+      {
+        for (Subscription eachSubscription : subscriptions)
+        {
+          eachSubscription.dispose();
+        }
+      }
+    }
 
-    public void setFinishedRunnable(Runnable runnable)
+    private void finish(String css, String genericCss, String emulationSelectors)
     {
-      synchronized (finishedRunnableLockObject)
+      if (!isFinished.compareAndSet(false, true))
+      {
+        return;
+      }
+      d("Setting elemhide css " + css.length() + " bytes, generic css "
+        + genericCss.length() + " bytes, emulation selectors " + emulationSelectors);
+      elemHideCssString = css;
+      elemHideGenericCssString = genericCss;
+      elemHideEmulationSelectorsString = emulationSelectors;
+      finishedLatch.countDown();
+
+      if (!isCancelled.get())
       {
-        this.finishedRunnable = runnable;
+        onElemhideReady(finishedLatch);
       }
     }
 
     public void cancel()
     {
-      w("Cancelling elemhide thread " + this);
+      w("Cancelling elemhide task " + this);
       if (isFinished.get())
       {
-        w("This thread is finished, exiting silently " + this);
+        w("This task is finished, exiting silently " + this);
       }
       else
       {
         isCancelled.set(true);
-        finish(EMPTY_ELEMHIDE_ARRAY_STRING);
+
+        // requests waiting for the selectors are not blocked any more
+        finish(EMPTY_ELEMHIDE_CSS_STRING, EMPTY_ELEMHIDE_CSS_STRING,
+          EMPTY_ELEMHIDE_EMULATION_SELECTORS_STRING);
+
+        // removes from the queue if not started yet
+        final Future<?> future = this.future;
+        if (future != null)
+        {
+          future.cancel(true);
+        }
+      }
+
+      // if already running, it exits once the worker thread is done with the engine
+      if (isStarted.compareAndSet(false, true))
+      {
+        onElemHideTaskExited(this);
       }
     }
   }
 
-  private Runnable elemHideThreadFinishedRunnable = new Runnable()
+  private void onElemHideTaskExited(ElemHideTask task)
   {
+    Runnable exitedRunnable = null;
+    synchronized (elemHideTaskLockObject)
+    {
+      if (elemHideTask == task)
+      {
+        w("elemHideTask set to null");
+        elemHideTask = null;
+      }
+
+      // cancelled (superseded) tasks can still be running
+      if (--runningElemHideTasksCount == 0)
+      {
+        exitedRunnable = elemHideTasksExitedRunnable;
+        elemHideTasksExitedRunnable = null;
+      }
+    }
+
+    if (exitedRunnable != null)
+    {
+      exitedRunnable.run();
+    }
+  }
+
+  private class PrefetchTask implements Runnable
+  {
+    private final PageContext page;
+
+    private PrefetchTask(PageContext page)
+    {
+      this.page = page;
+    }
+
     @Override
     public void run()
     {
-      synchronized (elemHideThreadLockObject)
+      if (provider.getCounter() == 0)
+      {
+        return;
+      }
+
+      // should not be invoked while holding the lock
+      provider.waitForReady();
+      if (Thread.currentThread().isInterrupted())
       {
-        w("elemHideThread set to null");
-        elemHideThread = null;
+        return;
       }
+
+      runWithEngine(new EngineAction<Void>()
+      {
+        @Override
+        public Void run(AdblockEngine engine)
+        {
+          if (engine != null)
+          {
+            prefetchSelectors(engine);
+          }
+          return null;
+        }
+      });
     }
-  };
+
+    private void prefetchSelectors(AdblockEngine engine)
+    {
+      if (page.isElemhideDisabled(engine))
+      {
+        return;
+      }
+
+      // results are cached by the engine and got from the cache by ElemHideTask
+      engine.getGenericElementHidingCss();
+      if (Thread.currentThread().isInterrupted())
+      {
+        return;
+      }
+      engine.getDomainElementHidingCss(page.getHost());
+      d("Prefetched elemhide selectors for " + page.getUrl());
+    }
+  }
+
+  /**
+   * Start getting whitelisting decisions and element hiding selectors for the page
+   * in background before the page is started loading, so they are ready earlier.
+   * Invoked automatically for the navigations passed to `shouldOverrideUrlLoading`.
+   * @param url page URL
+   */
+  public void prefetch(String url)
+  {
+    if (url == null || provider == null)
+    {
+      return;
+    }
+
+    final PageContext page = new PageContext(url);
+    if (page.getHost() == null || page.getHost().length() == 0)
+    {
+      return;
+    }
+
+    synchronized (prefetchLockObject)
+    {
+      // newer prefetch supersedes the previous one
+      if (prefetchFuture != null)
+      {
+        prefetchFuture.cancel(true);
+      }
+
+      d("Prefetching " + url);
+      prefetchedPageContext = page;
+      prefetchFuture = getTaskExecutor().submit(
+        new PrefetchTask(page), EngineTaskExecutor.PRIORITY_NORMAL);
+    }
+  }
+
+  private PageContext takePrefetchedPageContext(String url)
+  {
+    synchronized (prefetchLockObject)
+    {
+      final PageContext page = prefetchedPageContext;
+      final Future<?> future = prefetchFuture;
+      prefetchedPageContext = null;
+      prefetchFuture = null;
+
+      if (page == null || !page.getUrl().equals(url))
+      {
+        if (future != null)
+        {
+          // prefetched for another page
+          future.cancel(true);
+        }
+        return null;
+      }
+
+      if (future != null)
+      {
+        // not needed if not started yet (ElemHideTask will do it with higher priority),
+        // let it finish otherwise as the results are cached
+        future.cancel(false);
+      }
+      d("Reusing prefetched page context for " + url);
+      return page;
+    }
+  }
 
   private void initAbpLoading()
   {
@@ -1130,6 +1606,54 @@ public class AdblockWebView extends WebView
     ensureProvider();
   }
 
+  /**
+   * Action using the engine while the provider can't change or dispose it
+   * @param <T> result type
+   */
+  private interface EngineAction<T>
+  {
+    /**
+     * @param engine engine or `null` if already disposed
+     * @return result
+     */
+    T run(AdblockEngine engine);
+  }
+
+  private <T> T runWithEngine(EngineAction<T> action)
+  {
+    if (provider instanceof ConcurrentEngineProvider)
+    {
+      // many clients can use the engine concurrently
+      final Lock engineLock = ((ConcurrentEngineProvider) provider).getEngineReadWriteLock().readLock();
+      engineLock.lock();
+      try
+      {
+        return action.run(provider.getEngine());
+      }
+      finally
+      {
+        engineLock.unlock();
+      }
+    }
+
+    // custom providers serialize all the clients
+    synchronized (provider.getEngineLock())
+    {
+      return action.run(provider.getEngine());
+    }
+  }
+
+  private EngineTaskExecutor getTaskExecutor()
+  {
+    if (provider instanceof ConcurrentEngineProvider)
+    {
+      return ((ConcurrentEngineProvider) provider).getTaskExecutor();
+    }
+
+    // the providers not having own executor
+    return EngineTaskExecutor.getShared();
+  }
+
   private void ensureProvider()
   {
     // if AdblockWebView works as drop-in replacement for WebView 'provider' is not set.
@@ -1147,18 +1671,47 @@ public class AdblockWebView extends WebView
 
     loading = true;
     addDomListener = true;
+    navigationToken++;
+    scriptEvaluationsCount = 0;
+    elemHideEmulationTimeMillis = 0;
+    elemHideEmulationHiddenCount = 0;
     elementsHidden = false;
     loadError = null;
+    previousDocumentUrl = loadingDocumentUrl;
+    loadingDocumentUrl = (newUrl != null ? PageContext.stripFragment(newUrl) : null);
     url = newUrl;
+    pageContext = null;
+    if (newUrl != null)
+    {
+      // reuse whitelisting decisions made while prefetching
+      pageContext = takePrefetchedPageContext(newUrl);
+      if (pageContext == null)
+      {
+        pageContext = new PageContext(newUrl);
+      }
+    }
+
+    synchronized (elemHidePushLockObject)
+    {
+      // requested by the previous page
+      elemHidePushRequested = false;
+    }
 
     if (url != null)
     {
       elemHideLatch = new CountDownLatch(1);
-      synchronized (elemHideThreadLockObject)
+      synchronized (elemHideTaskLockObject)
       {
-        elemHideThread = new ElemHideThread(elemHideLatch);
-        elemHideThread.setFinishedRunnable(elemHideThreadFinishedRunnable);
-        elemHideThread.start();
+        // newer navigation supersedes the previous one (eg. redirect)
+        if (elemHideTask != null)
+        {
+          elemHideTask.cancel();
+        }
+
+        elemHideTask = new ElemHideTask(elemHideLatch, pageContext);
+        runningElemHideTasksCount++;
+        elemHideTask.setFuture(getTaskExecutor().submit(
+          elemHideTask, EngineTaskExecutor.PRIORITY_HIGH));
       }
     }
     else
@@ -1173,7 +1726,8 @@ public class AdblockWebView extends WebView
     {
       if (injectJs == null)
       {
-        injectJs = readScriptFile("inject.js").replace(HIDE_TOKEN, readScriptFile("css.js"));
+        // shared by all the instances, so no assets reading for every instance
+        injectJs = ContentScriptCache.getInjectScript(getContext(), debugMode, BRIDGE);
       }
     }
     catch (IOException e)
@@ -1282,14 +1836,14 @@ public class AdblockWebView extends WebView
     d("Stop abp loading");
 
     loading = false;
+    pageContext = null;
     stopPreventDrawing();
-    clearReferrers();
 
-    synchronized (elemHideThreadLockObject)
+    synchronized (elemHideTaskLockObject)
     {
-      if (elemHideThread != null)
+      if (elemHideTask != null)
       {
-        elemHideThread.cancel();
+        elemHideTask.cancel();
       }
     }
   }
@@ -1298,22 +1852,9 @@ public class AdblockWebView extends WebView
   @JavascriptInterface
   public void setElementsHidden(boolean value)
   {
-    // invoked with 'true' by JS callback when DOM is loaded
+    // invoked with 'true' by JS callback when DOM is loaded,
+    // drawing is allowed when the styles are applied (see `onElemhideApplied()`)
     elementsHidden = value;
-
-    // fired on worker thread, but needs to be invoked on main thread
-    if (value)
-    {
-//     handler.post(allowDrawRunnable);
-//     should work, but it's not working:
-//     the user can see element visible even though it was hidden on dom event
-
-      if (allowDrawDelay > 0)
-      {
-        d("Scheduled 'allow drawing' invocation in " + allowDrawDelay + " ms");
-      }
-      handler.postDelayed(allowDrawRunnable, allowDrawDelay);
-    }
   }
 
   // warning: do not rename (used in injected JS by method name)
@@ -1354,17 +1895,38 @@ public class AdblockWebView extends WebView
   {
     w("Start prevent drawing");
 
+    preventDrawingStartedMillis = SystemClock.elapsedRealtime();
     allowDraw = false;
+
+    handler.removeCallbacks(drawGateTimeoutRunnable);
+    handler.postDelayed(drawGateTimeoutRunnable, maxDrawGateTime);
   }
 
   protected void stopPreventDrawing()
   {
     d("Stop prevent drawing, invalidating");
 
+    handler.removeCallbacks(drawGateTimeoutRunnable);
+    if (!allowDraw)
+    {
+      lastBlankedMillis = SystemClock.elapsedRealtime() - preventDrawingStartedMillis;
+      d("Drawing was prevented for " + lastBlankedMillis + " ms");
+    }
+
     allowDraw = true;
     invalidate();
   }
 
+  private Runnable drawGateTimeoutRunnable = new Runnable()
+  {
+    @Override
+    public void run()
+    {
+      w("Styles are not applied in " + maxDrawGateTime + " ms, allowing drawing");
+      stopPreventDrawing();
+    }
+  };
+
   private Runnable allowDrawRunnable = new Runnable()
   {
     @Override
@@ -1376,35 +1938,220 @@ public class AdblockWebView extends WebView
 
   // warning: do not rename (used in injected JS by method name)
   @JavascriptInterface
+  public String getElemhideCss()
+  {
+    if (!awaitElemhide())
+    {
+      return EMPTY_ELEMHIDE_CSS_STRING;
+    }
+
+    d("Elemhide css ready, " + elemHideCssString.length() + " bytes");
+    return elemHideCssString;
+  }
+
+  /**
+   * Get element hiding selectors (generic and domain specific) for the current page
+   * @return JSON array string
+   * @deprecated injected script gets ready to inject CSS with `getElemhideCss()`
+   * and `getElemhideGenericCss()`, kept for custom injected scripts
+   */
+  // warning: do not rename (used in injected JS by method name)
+  @Deprecated
+  @JavascriptInterface
   public String getElemhideSelectors()
   {
-    if (elemHideLatch == null)
+    if (!awaitElemhide())
     {
       return EMPTY_ELEMHIDE_ARRAY_STRING;
     }
-    else
+
+    // empty if element hiding is disabled or whitelisted for the page
+    final PageContext page = pageContext;
+    if (page == null || page.getHost() == null
+      || (elemHideCssString.length() == 0 && elemHideGenericCssString.length() == 0))
     {
-      try
+      return EMPTY_ELEMHIDE_ARRAY_STRING;
+    }
+
+    return runWithEngine(new EngineAction<String>()
+    {
+      @Override
+      public String run(AdblockEngine engine)
       {
-        // elemhide selectors list getting is started in startAbpLoad() in background thread
-        d("Waiting for elemhide selectors to be ready");
-        elemHideLatch.await();
-        d("Elemhide selectors ready, " + elemHideSelectorsString.length() + " bytes");
+        if (engine == null)
+        {
+          w("FilterEngine already disposed");
+          return EMPTY_ELEMHIDE_ARRAY_STRING;
+        }
+
+        final String selectorsString = Utils.stringListToJsonArray(
+          engine.getElementHidingSelectors(page.getHost()));
+        d("Elemhide selectors ready, " + selectorsString.length() + " bytes");
+        return selectorsString;
+      }
+    });
+  }
+
+  // warning: do not rename (used in injected JS by method name)
+  @JavascriptInterface
+  public String getElemhideGenericCss()
+  {
+    if (!awaitElemhide())
+    {
+      return EMPTY_ELEMHIDE_CSS_STRING;
+    }
+
+    d("Elemhide generic css ready, " + elemHideGenericCssString.length() + " bytes");
+    return elemHideGenericCssString;
+  }
+
+  // warning: do not rename (used in injected JS by method name)
+  @JavascriptInterface
+  public String getElemhideEmulationSelectors()
+  {
+    if (!awaitElemhide())
+    {
+      return EMPTY_ELEMHIDE_EMULATION_SELECTORS_STRING;
+    }
+
+    d("Elemhide emulation selectors ready: " + elemHideEmulationSelectorsString);
+    return elemHideEmulationSelectorsString;
+  }
 
-        clearReferrers();
+  private boolean awaitElemhide()
+  {
+    final CountDownLatch latch = elemHideLatch;
+    if (latch == null)
+    {
+      return false;
+    }
+
+    try
+    {
+      // elemhide selectors getting is started in startAbpLoad() in background thread
+      d("Waiting for elemhide selectors to be ready");
+      latch.await();
+      return true;
+    }
+    catch (InterruptedException e)
+    {
+      w("Interrupted, returning empty elemhide");
+      return false;
+    }
+  }
+
+  // warning: do not rename (used in injected JS by method name)
+  @JavascriptInterface
+  public boolean isElemhideReady()
+  {
+    final CountDownLatch latch = elemHideLatch;
+    return latch == null || latch.getCount() == 0;
+  }
 
-        return elemHideSelectorsString;
+  /**
+   * Invoked from injected JS if elemhide is not ready yet,
+   * so it's pushed with `evaluateJavascript` when ready instead of blocking JS bridge thread
+   */
+  // warning: do not rename (used in injected JS by method name)
+  @JavascriptInterface
+  public void requestElemhidePush()
+  {
+    final CountDownLatch latch = elemHideLatch;
+    if (latch == null)
+    {
+      return;
+    }
+
+    synchronized (elemHidePushLockObject)
+    {
+      if (latch.getCount() > 0)
+      {
+        d("Elemhide push requested");
+        elemHidePushRequested = true;
+        return;
       }
-      catch (InterruptedException e)
+    }
+
+    // got ready meanwhile
+    pushElemhide(latch);
+  }
+
+  // warning: do not rename (used in injected JS by method name)
+  @JavascriptInterface
+  public void onElemhideApplied()
+  {
+    // invoked from `requestAnimationFrame` callback, so the styles are applied for the next frame
+    final long readyMillis = elemHideReadyMillis;
+    if (readyMillis > 0)
+    {
+      elemHideApplyLatencyMillis = SystemClock.elapsedRealtime() - readyMillis;
+      d("Elemhide applied in " + elemHideApplyLatencyMillis + " ms after ready");
+    }
+
+    // fired on worker thread, but needs to be invoked on main thread
+    if (allowDrawDelay > 0)
+    {
+      d("Scheduled 'allow drawing' invocation in " + allowDrawDelay + " ms");
+    }
+    handler.postDelayed(allowDrawRunnable, allowDrawDelay);
+  }
+
+  /**
+   * Get time from element hiding selectors being ready to being applied on the last page
+   * @return latency in milliseconds or `-1` if not applied yet
+   */
+  public long getElemhideApplyLatencyMillis()
+  {
+    return elemHideApplyLatencyMillis;
+  }
+
+  private void onElemhideReady(final CountDownLatch latch)
+  {
+    elemHideReadyMillis = SystemClock.elapsedRealtime();
+
+    synchronized (elemHidePushLockObject)
+    {
+      if (!elemHidePushRequested || latch != elemHideLatch)
       {
-        w("Interrupted, returning empty selectors list");
-        return EMPTY_ELEMHIDE_ARRAY_STRING;
+        return;
       }
+      elemHidePushRequested = false;
     }
+
+    pushElemhide(latch);
+  }
+
+  private void pushElemhide(final CountDownLatch latch)
+  {
+    // `evaluateJavascript` should be invoked on main thread
+    handler.post(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        if (latch != elemHideLatch)
+        {
+          d("Page changed, elemhide push skipped");
+          return;
+        }
+
+        d("Pushing elemhide");
+        // emulation selectors are JSON array, so they are pushed as is.
+        // the document can be changed (committed) but not injected yet, so the payload
+        // is kept in the document to be applied by the injected script then
+        final String args = JSONObject.quote(elemHideGenericCssString + elemHideCssString)
+          + ", " + elemHideEmulationSelectorsString;
+        runScript("if (typeof " + ELEMHIDE_PUSH_FUNCTION + " === 'function') { "
+          + ELEMHIDE_PUSH_FUNCTION + "(" + args + "); } else { "
+          + ELEMHIDE_PENDING_VARIABLE + " = [" + args + "]; }");
+      }
+    });
   }
 
   private void doDispose()
   {
+    clearReferrers();
+
     w("Disposing AdblockEngine");
     provider.release();
   }
@@ -1449,12 +2196,12 @@ public class AdblockWebView extends WebView
     stopLoading();
 
     DisposeRunnable disposeRunnable = new DisposeRunnable(disposeFinished);
-    synchronized (elemHideThreadLockObject)
+    synchronized (elemHideTaskLockObject)
     {
-      if (elemHideThread != null)
+      if (runningElemHideTasksCount > 0)
       {
         w("Busy with elemhide selectors, delayed disposing scheduled");
-        elemHideThread.setFinishedRunnable(disposeRunnable);
+        elemHideTasksExitedRunnable = disposeRunnable;
       }
       else
       {
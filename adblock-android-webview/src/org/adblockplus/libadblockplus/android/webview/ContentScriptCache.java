@@ -0,0 +1,174 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android.webview;
+
+import android.content.Context;
+
+import org.adblockplus.libadblockplus.android.Utils;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Process-wide cache of the scripts injected into the pages.
+ *
+ * Scripts are read from assets and rewritten once for every (debug mode, bridge name)
+ * and shared by all AdblockWebView instances.
+ */
+final class ContentScriptCache
+{
+  static final String INJECT_SCRIPT = "inject.js";
+  static final String CSS_SCRIPT = "css.js";
+  static final String EMULATION_SCRIPT = "emulation.js";
+
+  private static final String BRIDGE_TOKEN = "{{BRIDGE}}";
+  private static final String DEBUG_TOKEN = "{{DEBUG}}";
+  private static final String HIDE_TOKEN = "{{HIDE}}";
+  private static final String TOKEN_TOKEN = "{{TOKEN}}";
+
+  private static final ConcurrentMap<String, ContentScript> SCRIPTS =
+    new ConcurrentHashMap<String, ContentScript>();
+
+  private ContentScriptCache()
+  {
+  }
+
+  /**
+   * Script with navigation token placeholders
+   */
+  static final class ContentScript
+  {
+    private final String[] parts;
+
+    private ContentScript(String script)
+    {
+      parts = script.split(Pattern.quote(TOKEN_TOKEN), -1);
+    }
+
+    /**
+     * Get script to evaluate
+     * @param token navigation token
+     * @return script
+     */
+    String build(int token)
+    {
+      if (parts.length == 1)
+      {
+        return parts[0];
+      }
+
+      final String tokenString = String.valueOf(token);
+      final StringBuilder sb = new StringBuilder(
+        length() + (parts.length - 1) * tokenString.length());
+      for (int i = 0; i < parts.length; i++)
+      {
+        if (i > 0)
+        {
+          sb.append(tokenString);
+        }
+        sb.append(parts[i]);
+      }
+      return sb.toString();
+    }
+
+    private int length()
+    {
+      int length = 0;
+      for (String part : parts)
+      {
+        length += part.length();
+      }
+      return length;
+    }
+  }
+
+  /**
+   * Get inject script (inject.js with emulation.js and css.js inside)
+   * @param context context to read assets with
+   * @param debugMode `true` to keep debug logging
+   * @param bridge JS bridge name
+   * @return script
+   * @throws IOException if failed to read assets
+   */
+  static ContentScript getInjectScript(Context context, boolean debugMode, String bridge)
+    throws IOException
+  {
+    final String key = (debugMode ? "debug:" : "release:") + bridge;
+    ContentScript script = SCRIPTS.get(key);
+    if (script == null)
+    {
+      script = new ContentScript(
+        readScript(context, INJECT_SCRIPT, debugMode, bridge)
+          .replace(HIDE_TOKEN,
+            readScript(context, EMULATION_SCRIPT, debugMode, bridge) + "\n"
+              + readScript(context, CSS_SCRIPT, debugMode, bridge)));
+
+      final ContentScript existing = SCRIPTS.putIfAbsent(key, script);
+      if (existing != null)
+      {
+        script = existing;
+      }
+    }
+    return script;
+  }
+
+  private static String readScript(Context context, String filename, boolean debugMode, String bridge)
+    throws IOException
+  {
+    return compile(Utils.readAssetAsString(context, filename), debugMode, bridge);
+  }
+
+  /**
+   * Substitute the bridge name, drop debug lines (if not in debug mode),
+   * comments, indentation and empty lines
+   * @param script script source
+   * @param debugMode `true` to keep debug lines
+   * @param bridge JS bridge name
+   * @return compiled script
+   */
+  static String compile(String script, boolean debugMode, String bridge)
+  {
+    final StringBuilder sb = new StringBuilder(script.length());
+    for (String line : script.split("\n"))
+    {
+      line = line.trim();
+      if (line.contains(DEBUG_TOKEN))
+      {
+        if (!debugMode)
+        {
+          continue;
+        }
+        line = line.replace(DEBUG_TOKEN, "").trim();
+      }
+
+      if (line.length() == 0 || line.startsWith("//"))
+      {
+        continue;
+      }
+
+      if (sb.length() > 0)
+      {
+        sb.append('\n');
+      }
+      sb.append(line.replace(BRIDGE_TOKEN, bridge));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android.webview;
+
+import org.adblockplus.libadblockplus.android.AdblockEngine;
+import org.adblockplus.libadblockplus.android.UrlParser;
+
+/**
+ * Decisions depending on the main frame only, made once per navigation
+ * (lazily, on first request) and shared by all the page subresources and element hiding.
+ * Decisions are made again if filters, subscriptions or settings are changed
+ * (see `AdblockEngine.getDecisionsGeneration()`).
+ */
+class PageContext
+{
+  private final String url;
+  private final String documentUrl;
+  private final String host;
+  private final String[] referrers;
+
+  private volatile Decisions decisions;
+
+  private static final class Decisions
+  {
+    private final int generation;
+
+    // `null` if not decided yet
+    private volatile Boolean domainWhitelisted;
+    private volatile Boolean documentWhitelisted;
+    private volatile Boolean elemhideWhitelisted;
+
+    private Decisions(int generation)
+    {
+      this.generation = generation;
+    }
+  }
+
+  PageContext(String url)
+  {
+    this.url = url;
+    this.documentUrl = stripFragment(url);
+    this.host = UrlParser.getHost(url);
+    this.referrers = new String[]
+      {
+        url
+      };
+  }
+
+  static String stripFragment(String url)
+  {
+    final int fragmentPos = url.indexOf('#');
+    return fragmentPos >= 0 ? url.substring(0, fragmentPos) : url;
+  }
+
+  private Decisions getDecisions(AdblockEngine engine)
+  {
+    // decisions of older generations are discarded
+    final int generation = engine.getDecisionsGeneration();
+    Decisions value = decisions;
+    if (value == null || value.generation != generation)
+    {
+      value = new Decisions(generation);
+      decisions = value;
+    }
+    return value;
+  }
+
+  String getUrl()
+  {
+    return url;
+  }
+
+  String getHost()
+  {
+    return host;
+  }
+
+  /**
+   * Check if the resource is loaded by the main frame document itself (not by nested frame)
+   * @param referrerChainArray resource referrers
+   * @return `true` if the only referrer is the main frame document URL
+   */
+  boolean isMainFrameResource(String[] referrerChainArray)
+  {
+    // full URLs are compared as `$document` exceptions can match the path,
+    // the referrer stripped to origin by referrer policy is not considered the main frame
+    return referrerChainArray != null
+      && referrerChainArray.length == 1
+      && referrerChainArray[0] != null
+      && stripFragment(referrerChainArray[0]).equals(documentUrl);
+  }
+
+  /**
+   * Check if the resource host is the main frame host or its subdomain (or vice versa)
+   * @param resourceUrl resource URL
+   * @return `true` if first-party
+   */
+  boolean isFirstParty(String resourceUrl)
+  {
+    String resourceHost = UrlParser.getHost(resourceUrl);
+    if (host == null || host.length() == 0 || resourceHost == null || resourceHost.length() == 0)
+    {
+      return false;
+    }
+
+    return isSameOrSubdomain(resourceHost, host) || isSameOrSubdomain(host, resourceHost);
+  }
+
+  private static boolean isSameOrSubdomain(String host, String domain)
+  {
+    if (host.length() == domain.length())
+    {
+      return host.equalsIgnoreCase(domain);
+    }
+
+    int offset = host.length() - domain.length();
+    return offset > 0
+      && host.charAt(offset - 1) == '.'
+      && host.regionMatches(true, offset, domain, 0, domain.length());
+  }
+
+  boolean isDomainWhitelisted(AdblockEngine engine)
+  {
+    final Decisions decisions = getDecisions(engine);
+    Boolean value = decisions.domainWhitelisted;
+    if (value == null)
+    {
+      value = engine.isDomainWhitelisted(url, referrers);
+      decisions.domainWhitelisted = value;
+    }
+    return value;
+  }
+
+  boolean isDocumentWhitelisted(AdblockEngine engine)
+  {
+    final Decisions decisions = getDecisions(engine);
+    Boolean value = decisions.documentWhitelisted;
+    if (value == null)
+    {
+      value = engine.isDocumentWhitelisted(url, referrers);
+      decisions.documentWhitelisted = value;
+    }
+    return value;
+  }
+
+  boolean isElemhideWhitelisted(AdblockEngine engine)
+  {
+    final Decisions decisions = getDecisions(engine);
+    Boolean value = decisions.elemhideWhitelisted;
+    if (value == null)
+    {
+      value = engine.isElemhideWhitelisted(url, referrers);
+      decisions.elemhideWhitelisted = value;
+    }
+    return value;
+  }
+
+  /**
+   * Check if nothing should be blocked on the page
+   * @param engine engine
+   * @return `true` if the page domain or document is whitelisted
+   */
+  boolean isWhitelisted(AdblockEngine engine)
+  {
+    return isDomainWhitelisted(engine) || isDocumentWhitelisted(engine);
+  }
+
+  /**
+   * Check if elements should not be hidden on the page
+   * @param engine engine
+   * @return `true` if the page is whitelisted or element hiding is whitelisted for it
+   */
+  boolean isElemhideDisabled(AdblockEngine engine)
+  {
+    return isWhitelisted(engine) || isElemhideWhitelisted(engine);
+  }
+}
@@ -19,10 +19,13 @@
 
 // precached in JNI_OnLoad and released in JNI_OnUnload
 JniGlobalReference<jclass>* exceptionHandlerClass;
+jmethodID exceptionHandlerLogMethod;
 
 void JniCallbacks_OnLoad(JavaVM* vm, JNIEnv* env, void* reserved)
 {
   exceptionHandlerClass = new JniGlobalReference<jclass>(env, env->FindClass(PKG("JniExceptionHandler")));
+  exceptionHandlerLogMethod = env->GetStaticMethodID(
+    exceptionHandlerClass->Get(), "logException", "(Ljava/lang/Throwable;)V");
 }
 
 void JniCallbacks_OnUnload(JavaVM* vm, JNIEnv* env, void* reserved)
@@ -32,6 +35,7 @@ void JniCallbacks_OnUnload(JavaVM* vm, JNIEnv* env, void* reserved)
     delete exceptionHandlerClass;
     exceptionHandlerClass = NULL;
   }
+  exceptionHandlerLogMethod = NULL;
 }
 
 JniCallbackBase::JniCallbackBase(JNIEnv* env, jobject callbackObject)
@@ -47,14 +51,24 @@ JniCallbackBase::~JniCallbackBase()
 
 void JniCallbackBase::LogException(JNIEnv* env, jthrowable throwable) const
 {
-  jmethodID logMethod = env->GetStaticMethodID(
-    exceptionHandlerClass->Get(), "logException", "(Ljava/lang/Throwable;)V");
-  if (logMethod)
+  if (exceptionHandlerLogMethod)
   {
-    env->CallStaticVoidMethod(exceptionHandlerClass->Get(), logMethod, throwable);
+    env->CallStaticVoidMethod(exceptionHandlerClass->Get(), exceptionHandlerLogMethod, throwable);
   }
 }
 
+jmethodID JniCallbackBase::GetCallbackMethodID(JNIEnv* env, const char* name,
+    const char* signature) const
+{
+  jmethodID method = env->GetMethodID(
+      *JniLocalReference<jclass>(env, env->GetObjectClass(GetCallbackObject())),
+      name, signature);
+
+  // callback is not invoked if the method is not found
+  CheckAndLogJavaException(env);
+  return method;
+}
+
 void JniCallbackBase::CheckAndLogJavaException(JNIEnv* env) const
 {
   if (env->ExceptionCheck())
@@ -18,6 +18,7 @@
 #ifndef JNICALLBACKS_H
 #define JNICALLBACKS_H
 
+#include <atomic>
 #include <AdblockPlus.h>
 #include "Utils.h"
 #include "JniJsValue.h"
@@ -44,6 +45,10 @@ public:
     return callbackObject->Get();
   }
 
+protected:
+  // should be resolved once in the constructor, not for every invocation
+  jmethodID GetCallbackMethodID(JNIEnv* env, const char* name, const char* signature) const;
+
 private:
   JavaVM* javaVM;
   const JniGlobalReference<jobject>::Ptr callbackObject;
@@ -54,6 +59,9 @@ class JniEventCallback : public JniCallbackBase
 public:
   JniEventCallback(JNIEnv* env, jobject callbackObject);
   void Callback(AdblockPlus::JsValueList&& params);
+
+private:
+  jmethodID method;
 };
 
 class JniUpdateAvailableCallback : public JniCallbackBase
@@ -61,6 +69,9 @@ class JniUpdateAvailableCallback : public JniCallbackBase
 public:
   JniUpdateAvailableCallback(JNIEnv* env, jobject callbackObject);
   void Callback(const std::string& arg);
+
+private:
+  jmethodID method;
 };
 
 class JniUpdateCheckDoneCallback : public JniCallbackBase
@@ -68,6 +79,9 @@ class JniUpdateCheckDoneCallback : public JniCallbackBase
 public:
   JniUpdateCheckDoneCallback(JNIEnv* env, jobject callbackObject);
   void Callback(const std::string& arg);
+
+private:
+  jmethodID method;
 };
 
 class JniFilterChangeCallback : public JniCallbackBase
@@ -75,6 +89,9 @@ class JniFilterChangeCallback : public JniCallbackBase
 public:
   JniFilterChangeCallback(JNIEnv* env, jobject callbackObject);
   void Callback(const std::string& arg, AdblockPlus::JsValue&& jsValue);
+
+private:
+  jmethodID method;
 };
 
 class JniLogSystemCallback : public JniCallbackBase, public AdblockPlus::LogSystem
@@ -82,6 +99,28 @@ class JniLogSystemCallback : public JniCallbackBase, public AdblockPlus::LogSyst
 public:
   JniLogSystemCallback(JNIEnv* env, jobject callbackObject);
   void operator()(AdblockPlus::LogSystem::LogLevel logLevel, const std::string& message, const std::string& source);
+
+  // index of Java LogSystem.LogLevel (ordinal), messages of lower levels are not forwarded to Java
+  void SetMinLogLevel(int minLogLevel)
+  {
+    this->minLogLevel = minLogLevel;
+  }
+
+  int64_t GetForwardedCount() const
+  {
+    return forwardedCount;
+  }
+
+  int64_t GetFilteredCount() const
+  {
+    return filteredCount;
+  }
+
+private:
+  jmethodID method;
+  std::atomic<int> minLogLevel;
+  std::atomic<int64_t> forwardedCount;
+  std::atomic<int64_t> filteredCount;
 };
 
 class JniShowNotificationCallback : public JniCallbackBase
@@ -89,6 +128,9 @@ class JniShowNotificationCallback : public JniCallbackBase
 public:
   JniShowNotificationCallback(JNIEnv* env, jobject callbackObject);
   void Callback(AdblockPlus::Notification&&);
+
+private:
+  jmethodID method;
 };
 
 class JniWebRequest : public JniCallbackBase, public AdblockPlus::IWebRequestSync
@@ -98,6 +140,8 @@ public:
   AdblockPlus::ServerResponse GET(const std::string& url, const AdblockPlus::HeaderList& requestHeaders) const override;
 
 private:
+  jmethodID method;
+
   jobject NewTuple(JNIEnv* env, const std::string& a, const std::string& b) const;
 };
 
@@ -106,6 +150,9 @@ class JniIsAllowedConnectionTypeCallback : public JniCallbackBase
 public:
   JniIsAllowedConnectionTypeCallback(JNIEnv* env, jobject callbackObject);
   bool Callback(const std::string* allowedConnectionType);
+
+private:
+  jmethodID method;
 };
 
 #endif /* JNICALLBACKS_H */
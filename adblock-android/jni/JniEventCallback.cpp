@@ -34,17 +34,14 @@ static void JNICALL JniDtor(JNIEnv* env, jclass clazz, jlong ptr)
 JniEventCallback::JniEventCallback(JNIEnv* env, jobject callbackObject)
   : JniCallbackBase(env, callbackObject)
 {
+  method = GetCallbackMethodID(env, "eventCallback",
+      "(Ljava/util/List;)V");
 }
 
 void JniEventCallback::Callback(AdblockPlus::JsValueList&& params)
 {
   JNIEnvAcquire env(GetJavaVM());
 
-  jmethodID method = env->GetMethodID(
-      *JniLocalReference<jclass>(*env,
-          env->GetObjectClass(GetCallbackObject())),
-      "eventCallback", "(Ljava/util/List;)V");
-
   if (method)
   {
     jobject jsList = JniJsValueListToArrayList(*env, std::move(params));
@@ -35,17 +35,14 @@ JniFilterChangeCallback::JniFilterChangeCallback(JNIEnv* env,
     jobject callbackObject)
     : JniCallbackBase(env, callbackObject)
 {
+  method = GetCallbackMethodID(env, "filterChangeCallback",
+      "(Ljava/lang/String;" TYP("JsValue") ")V");
 }
 
 void JniFilterChangeCallback::Callback(const std::string& arg, AdblockPlus::JsValue&& jsValue)
 {
   JNIEnvAcquire env(GetJavaVM());
 
-  jmethodID method = env->GetMethodID(
-      *JniLocalReference<jclass>(*env,
-          env->GetObjectClass(GetCallbackObject())),
-      "filterChangeCallback", "(Ljava/lang/String;" TYP("JsValue") ")V");
-
   if (method)
   {
     JniLocalReference<jstring> jArg(*env, env->NewStringUTF(arg.c_str()));
@@ -33,17 +33,77 @@ static jobject SubscriptionsToArrayList(JNIEnv* env, std::vector<AdblockPlus::Su
   return list;
 }
 
-static AdblockPlus::FilterEngine::ContentType ConvertContentType(JNIEnv *env,
-    jobject jContentType)
+// see FilterEngine.MATCH_* constants
+static const jint MATCH_NONE = 0;
+static const jint MATCH_BLOCKING = 1;
+static const jint MATCH_EXCEPTION = 2;
+static const jint MATCH_FLAG_DOMAIN_SPECIFIC = 0x10;
+
+// indexed by Java FilterEngine.ContentType ordinal,
+// filled once in registerNatives so no enum name lookups are done for every match.
+// Content types not known to the native core (eg. if Java and native enums drift)
+// are kept as `false`, so matching them fails instead of failing to load the library
+static std::vector<std::pair<bool, AdblockPlus::FilterEngine::ContentType>> contentTypes;
+
+static void InitContentTypes(JNIEnv* env)
 {
   JniLocalReference<jclass> contentTypeClass(env,
-      env->GetObjectClass(jContentType));
+      env->FindClass(PKG("FilterEngine$ContentType")));
+  jmethodID valuesMethod = env->GetStaticMethodID(*contentTypeClass, "values",
+      "()[" TYP("FilterEngine$ContentType"));
   jmethodID nameMethod = env->GetMethodID(*contentTypeClass, "name",
       "()Ljava/lang/String;");
-  JniLocalReference<jstring> jValue(env,
-      (jstring) env->CallObjectMethod(jContentType, nameMethod));
-  const std::string value = JniJavaToStdString(env, *jValue);
-  return AdblockPlus::FilterEngine::StringToContentType(value);
+  JniLocalReference<jobjectArray> jValues(env,
+      (jobjectArray) env->CallStaticObjectMethod(*contentTypeClass, valuesMethod));
+
+  jsize len = env->GetArrayLength(*jValues);
+  contentTypes.clear();
+  for (jsize i = 0; i < len; i++)
+  {
+    JniLocalReference<jobject> jValue(env, env->GetObjectArrayElement(*jValues, i));
+    JniLocalReference<jstring> jName(env,
+        (jstring) env->CallObjectMethod(*jValue, nameMethod));
+    std::string name = JniJavaToStdString(env, *jName);
+    try
+    {
+      contentTypes.push_back(std::make_pair(true,
+          AdblockPlus::FilterEngine::StringToContentType(name)));
+    }
+    catch (const std::exception&)
+    {
+      contentTypes.push_back(std::make_pair(false,
+          AdblockPlus::FilterEngine::ContentType()));
+    }
+  }
+}
+
+static AdblockPlus::FilterEngine::ContentType ConvertContentTypeOrdinal(jint ordinal)
+{
+  if (ordinal < 0 || static_cast<size_t>(ordinal) >= contentTypes.size()
+      || !contentTypes[ordinal].first)
+  {
+    throw std::invalid_argument("Invalid content type ordinal: " + std::to_string(ordinal));
+  }
+  return contentTypes[ordinal].second;
+}
+
+static jint FilterToMatchVerdict(const AdblockPlus::FilterPtr& filterPtr)
+{
+  if (!filterPtr.get())
+  {
+    return MATCH_NONE;
+  }
+
+  jint verdict = (filterPtr->GetType() == AdblockPlus::Filter::TYPE_EXCEPTION
+      ? MATCH_EXCEPTION
+      : MATCH_BLOCKING);
+
+  if (filterPtr->GetProperty("text").AsString().find("||") != std::string::npos)
+  {
+    verdict |= MATCH_FLAG_DOMAIN_SPECIFIC;
+  }
+
+  return verdict;
 }
 
 namespace
@@ -52,6 +112,79 @@ namespace
   {
     return JniLongToTypePtr<JniPlatform>(jniPlatformPtr)->platform->GetFilterEngine();
   }
+
+  AdblockPlus::JsEngine& GetJsEngineRef(jlong jniPlatformPtr)
+  {
+    return JniLongToTypePtr<JniPlatform>(jniPlatformPtr)->platform->GetJsEngine();
+  }
+
+  // evaluated once per engine not to compile the function on every call
+  AdblockPlus::JsValue GetJsFunction(jlong jniPlatformPtr, const char* source)
+  {
+    JniPlatform* jniPlatform = JniLongToTypePtr<JniPlatform>(jniPlatformPtr);
+    std::lock_guard<std::mutex> lock(jniPlatform->jsFunctionsMutex);
+    auto it = jniPlatform->jsFunctions.find(source);
+    if (it == jniPlatform->jsFunctions.end())
+    {
+      it = jniPlatform->jsFunctions.emplace(source,
+          jniPlatform->platform->GetJsEngine().Evaluate(source)).first;
+    }
+    return it->second;
+  }
+}
+
+// Generic selectors are the ones applied on every domain unconditionally,
+// the rest are domain specific (or generic with exceptions) and depend on the domain.
+// Older cores not supporting the split return no generic selectors and all matching
+// selectors for the domain.
+static const char* GENERIC_SELECTORS_FUNCTION =
+    "(function()\n"
+    "{\n"
+    "  let {ElemHide} = require('elemHide');\n"
+    "  if (!('getUnconditionalSelectors' in ElemHide) || !('NO_UNCONDITIONAL' in ElemHide))\n"
+    "    return [];\n"
+    "  return ElemHide.getUnconditionalSelectors();\n"
+    "})";
+
+static const char* DOMAIN_SELECTORS_FUNCTION =
+    "(function(domain)\n"
+    "{\n"
+    "  let {ElemHide} = require('elemHide');\n"
+    "  if (!('getUnconditionalSelectors' in ElemHide) || !('NO_UNCONDITIONAL' in ElemHide))\n"
+    "    return ElemHide.getSelectorsForDomain(domain);\n"
+    "  return ElemHide.getSelectorsForDomain(domain, ElemHide.NO_UNCONDITIONAL);\n"
+    "})";
+
+// Emulation filters (eg. `example.com#?#div:-abp-has(.ad)`) can't be applied with CSS,
+// so only the selectors are returned to be matched in the page.
+// Older cores not supporting emulation filters return no selectors.
+static const char* EMULATION_SELECTORS_FUNCTION =
+    "(function(domain)\n"
+    "{\n"
+    "  let ElemHideEmulation;\n"
+    "  try\n"
+    "  {\n"
+    "    ElemHideEmulation = require('elemHideEmulation').ElemHideEmulation;\n"
+    "  }\n"
+    "  catch (e)\n"
+    "  {\n"
+    "    return [];\n"
+    "  }\n"
+    "  return ElemHideEmulation.getRulesForDomain(domain).map(filter => filter.selector);\n"
+    "})";
+
+static jobject JsStringListToArrayList(JNIEnv* env, const AdblockPlus::JsValue& jsList)
+{
+  jobject list = NewJniArrayList(env);
+
+  AdblockPlus::JsValueList values = jsList.AsList();
+  for (AdblockPlus::JsValueList::const_iterator it = values.begin(), end = values.end(); it != end; it++)
+  {
+    JniAddObjectToList(env, list,
+        *JniLocalReference<jstring>(env, env->NewStringUTF(it->AsString().c_str())));
+  }
+
+  return list;
 }
 
 static jboolean JNICALL JniIsFirstRun(JNIEnv* env, jclass clazz, jlong ptr)
@@ -281,18 +414,61 @@ static jobject JNICALL JniGetElementHidingSelectors(JNIEnv* env, jclass clazz,
   CATCH_THROW_AND_RETURN(env, 0)
 }
 
-static jobject JNICALL JniMatches(JNIEnv* env, jclass clazz, jlong ptr, jstring jUrl, jobject jContentType, jstring jDocumentUrl)
+static jobject JNICALL JniGetGenericElementHidingSelectors(JNIEnv* env, jclass clazz, jlong ptr)
+{
+  try
+  {
+    AdblockPlus::JsValue func = GetJsFunction(ptr, GENERIC_SELECTORS_FUNCTION);
+    return JsStringListToArrayList(env, func.Call(AdblockPlus::JsValueList()));
+  }
+  CATCH_THROW_AND_RETURN(env, 0)
+}
+
+static jobject JNICALL JniGetDomainElementHidingSelectors(JNIEnv* env, jclass clazz,
+    jlong ptr, jstring jDomain)
+{
+  AdblockPlus::JsEngine& jsEngine = GetJsEngineRef(ptr);
+
+  std::string domain = JniJavaToStdString(env, jDomain);
+
+  try
+  {
+    AdblockPlus::JsValue func = GetJsFunction(ptr, DOMAIN_SELECTORS_FUNCTION);
+    AdblockPlus::JsValueList params;
+    params.push_back(jsEngine.NewValue(domain));
+    return JsStringListToArrayList(env, func.Call(params));
+  }
+  CATCH_THROW_AND_RETURN(env, 0)
+}
+
+static jobject JNICALL JniGetElementHidingEmulationSelectors(JNIEnv* env, jclass clazz,
+    jlong ptr, jstring jDomain)
+{
+  AdblockPlus::JsEngine& jsEngine = GetJsEngineRef(ptr);
+
+  std::string domain = JniJavaToStdString(env, jDomain);
+
+  try
+  {
+    AdblockPlus::JsValue func = GetJsFunction(ptr, EMULATION_SELECTORS_FUNCTION);
+    AdblockPlus::JsValueList params;
+    params.push_back(jsEngine.NewValue(domain));
+    return JsStringListToArrayList(env, func.Call(params));
+  }
+  CATCH_THROW_AND_RETURN(env, 0)
+}
+
+static jobject JNICALL JniMatches(JNIEnv* env, jclass clazz, jlong ptr, jstring jUrl, jint jContentTypeOrdinal, jstring jDocumentUrl)
 {
   AdblockPlus::FilterEngine& engine = GetFilterEngineRef(ptr);
 
   std::string url = JniJavaToStdString(env, jUrl);
-  AdblockPlus::FilterEngine::ContentType contentType =
-      ConvertContentType(env, jContentType);
   std::string documentUrl = JniJavaToStdString(env, jDocumentUrl);
 
   try
   {
-    AdblockPlus::FilterPtr filterPtr = engine.Matches(url, contentType, documentUrl);
+    AdblockPlus::FilterPtr filterPtr = engine.Matches(url,
+        ConvertContentTypeOrdinal(jContentTypeOrdinal), documentUrl);
 
     return filterPtr.get() ? NewJniFilter(env, std::move(*filterPtr)) : 0;
   }
@@ -318,26 +494,88 @@ static void JavaStringArrayToStringVector(JNIEnv* env, jobjectArray jArray,
 }
 
 static jobject JNICALL JniMatchesMany(JNIEnv* env, jclass clazz, jlong ptr,
-    jstring jUrl, jobject jContentType, jobjectArray jDocumentUrls)
+    jstring jUrl, jint jContentTypeOrdinal, jobjectArray jDocumentUrls)
 {
   AdblockPlus::FilterEngine& engine = GetFilterEngineRef(ptr);
 
   std::string url = JniJavaToStdString(env, jUrl);
-  AdblockPlus::FilterEngine::ContentType contentType =
-      ConvertContentType(env, jContentType);
 
   std::vector<std::string> documentUrls;
   JavaStringArrayToStringVector(env, jDocumentUrls, documentUrls);
 
   try
   {
-    AdblockPlus::FilterPtr filterPtr = engine.Matches(url, contentType, documentUrls);
+    AdblockPlus::FilterPtr filterPtr = engine.Matches(url,
+        ConvertContentTypeOrdinal(jContentTypeOrdinal), documentUrls);
 
     return (filterPtr.get() ? NewJniFilter(env, std::move(*filterPtr)) : 0);
   }
   CATCH_THROW_AND_RETURN(env, 0)
 }
 
+static jint JNICALL JniMatchVerdict(JNIEnv* env, jclass clazz, jlong ptr,
+    jstring jUrl, jint jContentTypeOrdinal, jobjectArray jDocumentUrls)
+{
+  AdblockPlus::FilterEngine& engine = GetFilterEngineRef(ptr);
+
+  std::string url = JniJavaToStdString(env, jUrl);
+  std::vector<std::string> documentUrls;
+  JavaStringArrayToStringVector(env, jDocumentUrls, documentUrls);
+
+  try
+  {
+    AdblockPlus::FilterPtr filterPtr = engine.Matches(url,
+        ConvertContentTypeOrdinal(jContentTypeOrdinal), documentUrls);
+
+    return FilterToMatchVerdict(filterPtr);
+  }
+  CATCH_THROW_AND_RETURN(env, MATCH_NONE)
+}
+
+static jbyteArray JNICALL JniMatchesBatch(JNIEnv* env, jclass clazz, jlong ptr,
+    jobjectArray jUrls, jintArray jContentTypeOrdinals, jobjectArray jDocumentUrls)
+{
+  AdblockPlus::FilterEngine& engine = GetFilterEngineRef(ptr);
+
+  std::vector<std::string> documentUrls;
+  JavaStringArrayToStringVector(env, jDocumentUrls, documentUrls);
+
+  try
+  {
+    jsize count = env->GetArrayLength(jUrls);
+    if (env->GetArrayLength(jContentTypeOrdinals) != count)
+    {
+      throw std::invalid_argument("URLs and content types count mismatch");
+    }
+
+    std::vector<jint> contentTypeOrdinals(count);
+    std::vector<jbyte> verdicts(count);
+    if (count > 0)
+    {
+      env->GetIntArrayRegion(jContentTypeOrdinals, 0, count, &contentTypeOrdinals[0]);
+    }
+
+    for (jsize i = 0; i < count; i++)
+    {
+      std::string url = JniJavaToStdString(env,
+          *JniLocalReference<jstring>(env,
+              static_cast<jstring>(env->GetObjectArrayElement(jUrls, i))));
+
+      AdblockPlus::FilterPtr filterPtr = engine.Matches(url,
+          ConvertContentTypeOrdinal(contentTypeOrdinals[i]), documentUrls);
+      verdicts[i] = static_cast<jbyte>(FilterToMatchVerdict(filterPtr));
+    }
+
+    jbyteArray jVerdicts = env->NewByteArray(count);
+    if (count > 0)
+    {
+      env->SetByteArrayRegion(jVerdicts, 0, count, &verdicts[0]);
+    }
+    return jVerdicts;
+  }
+  CATCH_THROW_AND_RETURN(env, 0)
+}
+
 static jboolean JNICALL JniIsDocumentWhitelisted(JNIEnv* env, jclass clazz, jlong ptr,
     jstring jUrl, jobjectArray jDocumentUrls)
 {
@@ -526,8 +764,13 @@ static JNINativeMethod methods[] =
   { (char*)"removeFilterChangeCallback", (char*)"(J)V", (void*)JniRemoveFilterChangeCallback },
   { (char*)"forceUpdateCheck", (char*)"(JJ)V", (void*)JniForceUpdateCheck },
   { (char*)"getElementHidingSelectors", (char*)"(JLjava/lang/String;)Ljava/util/List;", (void*)JniGetElementHidingSelectors },
-  { (char*)"matches", (char*)"(JLjava/lang/String;" TYP("FilterEngine$ContentType") "Ljava/lang/String;)" TYP("Filter"), (void*)JniMatches },
-  { (char*)"matches", (char*)"(JLjava/lang/String;" TYP("FilterEngine$ContentType") "[Ljava/lang/String;)" TYP("Filter"), (void*)JniMatchesMany },
+  { (char*)"getGenericElementHidingSelectors", (char*)"(J)Ljava/util/List;", (void*)JniGetGenericElementHidingSelectors },
+  { (char*)"getDomainElementHidingSelectors", (char*)"(JLjava/lang/String;)Ljava/util/List;", (void*)JniGetDomainElementHidingSelectors },
+  { (char*)"getElementHidingEmulationSelectors", (char*)"(JLjava/lang/String;)Ljava/util/List;", (void*)JniGetElementHidingEmulationSelectors },
+  { (char*)"matches", (char*)"(JLjava/lang/String;ILjava/lang/String;)" TYP("Filter"), (void*)JniMatches },
+  { (char*)"matches", (char*)"(JLjava/lang/String;I[Ljava/lang/String;)" TYP("Filter"), (void*)JniMatchesMany },
+  { (char*)"matchVerdict", (char*)"(JLjava/lang/String;I[Ljava/lang/String;)I", (void*)JniMatchVerdict },
+  { (char*)"matchesBatch", (char*)"(J[Ljava/lang/String;[I[Ljava/lang/String;)[B", (void*)JniMatchesBatch },
   { (char*)"isDocumentWhitelisted", (char*)"(JLjava/lang/String;[Ljava/lang/String;)Z", (void*)JniIsDocumentWhitelisted },
   { (char*)"isElemhideWhitelisted", (char*)"(JLjava/lang/String;[Ljava/lang/String;)Z", (void*)JniIsElemhideWhitelisted },
   { (char*)"getPref", (char*)"(JLjava/lang/String;)" TYP("JsValue"), (void*)JniGetPref },
@@ -545,4 +788,11 @@ static JNINativeMethod methods[] =
 extern "C" JNIEXPORT void JNICALL Java_org_adblockplus_libadblockplus_FilterEngine_registerNatives(JNIEnv *env, jclass clazz)
 {
   env->RegisterNatives(clazz, methods, sizeof(methods) / sizeof(methods[0]));
+
+  // thrown to Java instead of aborting the process, matching fails then
+  try
+  {
+    InitContentTypes(env);
+  }
+  CATCH_AND_THROW(env)
 }
@@ -21,17 +21,14 @@ JniIsAllowedConnectionTypeCallback::JniIsAllowedConnectionTypeCallback(JNIEnv* e
     jobject callbackObject)
     : JniCallbackBase(env, callbackObject)
 {
+  method = GetCallbackMethodID(env, "isConnectionAllowed",
+      "(Ljava/lang/String;)Z");
 }
 
 bool JniIsAllowedConnectionTypeCallback::Callback(const std::string* allowedConnectionType)
 {
   JNIEnvAcquire env(GetJavaVM());
 
-  jmethodID method = env->GetMethodID(
-      *JniLocalReference<jclass>(*env, env->GetObjectClass(GetCallbackObject())),
-      "isConnectionAllowed",
-      "(Ljava/lang/String;)Z");
-
   jstring jAllowedConnectionType =
     (allowedConnectionType != NULL
     ? JniStdStringToJava(*env, *allowedConnectionType)
@@ -18,16 +18,64 @@
 #include "JniCallbacks.h"
 #include "JniLogSystem.h"
 
+namespace
+{
+  const char* LOG_LEVEL_NAMES[] =
+  {
+    "TRACE", "LOG", "INFO", "WARN", "ERROR"
+  };
+
+  const int LOG_LEVELS_COUNT = sizeof(LOG_LEVEL_NAMES) / sizeof(LOG_LEVEL_NAMES[0]);
+
+  int GetLogLevelIndex(AdblockPlus::LogSystem::LogLevel logLevel)
+  {
+    switch (logLevel)
+    {
+    default:
+    case AdblockPlus::LogSystem::LOG_LEVEL_TRACE:
+      return 0;
+    case AdblockPlus::LogSystem::LOG_LEVEL_LOG:
+      return 1;
+    case AdblockPlus::LogSystem::LOG_LEVEL_INFO:
+      return 2;
+    case AdblockPlus::LogSystem::LOG_LEVEL_WARN:
+      return 3;
+    case AdblockPlus::LogSystem::LOG_LEVEL_ERROR:
+      return 4;
+    }
+  }
+}
+
 // precached in JNI_OnLoad and released in JNI_OnUnload
 JniGlobalReference<jclass>* logLevelClass;
+JniGlobalReference<jobject>* logLevels[LOG_LEVELS_COUNT];
 
 void JniLogSystem_OnLoad(JavaVM* vm, JNIEnv* env, void* reserved)
 {
   logLevelClass = new JniGlobalReference<jclass>(env, env->FindClass(PKG("LogSystem$LogLevel")));
+
+  // not to look up enum constant for every log line
+  for (int i = 0; i < LOG_LEVELS_COUNT; i++)
+  {
+    jfieldID enumField = env->GetStaticFieldID(logLevelClass->Get(), LOG_LEVEL_NAMES[i],
+        TYP("LogSystem$LogLevel"));
+    JniLocalReference<jobject> jLogLevel(env,
+        env->GetStaticObjectField(logLevelClass->Get(), enumField));
+    logLevels[i] = new JniGlobalReference<jobject>(env, *jLogLevel);
+  }
 }
 
 void JniLogSystem_OnUnload(JavaVM* vm, JNIEnv* env, void* reserved)
 {
+  for (int i = 0; i < LOG_LEVELS_COUNT; i++)
+  {
+    if (logLevels[i])
+    {
+      delete logLevels[i];
+      logLevels[i] = NULL;
+    }
+  }
+
   if (logLevelClass)
   {
     delete logLevelClass;
@@ -36,61 +84,38 @@ void JniLogSystem_OnUnload(JavaVM* vm, JNIEnv* env, void* reserved)
 }
 
 JniLogSystemCallback::JniLogSystemCallback(JNIEnv* env, jobject callbackObject)
-  : JniCallbackBase(env, callbackObject), AdblockPlus::LogSystem()
+  : JniCallbackBase(env, callbackObject), AdblockPlus::LogSystem(),
+    minLogLevel(0), forwardedCount(0), filteredCount(0)
 {
+  method = GetCallbackMethodID(env, "logCallback",
+      "(" TYP("LogSystem$LogLevel") "Ljava/lang/String;Ljava/lang/String;)V");
 }
 
 void JniLogSystemCallback::operator()(AdblockPlus::LogSystem::LogLevel logLevel,
     const std::string& message, const std::string& source)
 {
-  JNIEnvAcquire env(GetJavaVM());
-
-  jmethodID method = env->GetMethodID(
-      *JniLocalReference<jclass>(*env,
-          env->GetObjectClass(GetCallbackObject())),
-      "logCallback",
-      "(" TYP("LogSystem$LogLevel") "Ljava/lang/String;Ljava/lang/String;)V");
+  // filtered before attaching the thread and converting the strings
+  const int logLevelIndex = GetLogLevelIndex(logLevel);
+  if (logLevelIndex < minLogLevel)
+  {
+    filteredCount++;
+    return;
+  }
+  forwardedCount++;
 
-  // TODO: Set log level from Java and handle it here (to reduce C++->Java calls)
+  JNIEnvAcquire env(GetJavaVM());
 
   if (method)
   {
-    const char* enumName = 0;
-
-    switch (logLevel)
+    JniGlobalReference<jobject>* jLogLevel = logLevels[logLevelIndex];
+    if (jLogLevel)
     {
-    default:
-    case AdblockPlus::LogSystem::LOG_LEVEL_TRACE:
-      enumName = "TRACE";
-      break;
-    case AdblockPlus::LogSystem::LOG_LEVEL_LOG:
-      enumName = "LOG";
-      break;
-    case AdblockPlus::LogSystem::LOG_LEVEL_INFO:
-      enumName = "INFO";
-      break;
-    case AdblockPlus::LogSystem::LOG_LEVEL_WARN:
-      enumName = "WARN";
-      break;
-    case AdblockPlus::LogSystem::LOG_LEVEL_ERROR:
-      enumName = "ERROR";
-      break;
-    }
-
-    jclass enumClass = logLevelClass->Get();
-    if (enumClass)
-    {
-      jfieldID enumField = env->GetStaticFieldID(enumClass, enumName,
-          TYP("LogSystem$LogLevel"));
-      JniLocalReference<jobject> jLogLevel(*env,
-          env->GetStaticObjectField(enumClass, enumField));
-
       JniLocalReference<jstring> jMessage(*env,
           env->NewStringUTF(message.c_str()));
       JniLocalReference<jstring> jSource(*env,
           env->NewStringUTF(source.c_str()));
 
-      env->CallVoidMethod(GetCallbackObject(), method, *jLogLevel, *jMessage,
+      env->CallVoidMethod(GetCallbackObject(), method, jLogLevel->Get(), *jMessage,
           *jSource);
     }
 
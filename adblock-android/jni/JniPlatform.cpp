@@ -48,7 +48,8 @@ static jlong JNICALL JniCtor(JNIEnv* env, jclass clazz,
     jniPlatform->scheduler = platformBuilder.GetDefaultAsyncExecutor();
     if (logSystem)
     {
-      platformBuilder.logSystem.reset(new JniLogSystemCallback(env, logSystem));
+      jniPlatform->logSystem = new JniLogSystemCallback(env, logSystem);
+      platformBuilder.logSystem.reset(jniPlatform->logSystem);
     }
     if (webRequest)
     {
@@ -133,6 +134,27 @@ static void JNICALL JniEnsureFilterEngine(JNIEnv* env, jclass clazz, jlong ptr)
   CATCH_AND_THROW(env)
 }
 
+static void JNICALL JniSetMinLogLevel(JNIEnv* env, jclass clazz, jlong ptr, jint jLogLevelOrdinal)
+{
+  JniLogSystemCallback* logSystem = JniLongToTypePtr<JniPlatform>(ptr)->logSystem;
+  if (logSystem)
+  {
+    logSystem->SetMinLogLevel(jLogLevelOrdinal);
+  }
+}
+
+static jlong JNICALL JniGetForwardedLogMessagesCount(JNIEnv* env, jclass clazz, jlong ptr)
+{
+  JniLogSystemCallback* logSystem = JniLongToTypePtr<JniPlatform>(ptr)->logSystem;
+  return logSystem ? logSystem->GetForwardedCount() : 0;
+}
+
+static jlong JNICALL JniGetFilteredLogMessagesCount(JNIEnv* env, jclass clazz, jlong ptr)
+{
+  JniLogSystemCallback* logSystem = JniLongToTypePtr<JniPlatform>(ptr)->logSystem;
+  return logSystem ? logSystem->GetFilteredCount() : 0;
+}
+
 static JNINativeMethod methods[] =
 {
   { (char*)"ctor", (char*)"(" TYP("LogSystem") TYP("WebRequest") "Ljava/lang/String;)J", (void*)JniCtor },
@@ -141,7 +163,10 @@ static JNINativeMethod methods[] =
   { (char*)"setUpJsEngine", (char*)"(J" TYP("AppInfo") "J)V", (void*)JniSetUpJsEngine },
   { (char*)"getJsEnginePtr", (char*)"(J)J", (void*)JniGetJsEnginePtr },
   { (char*)"setUpFilterEngine", (char*)"(J" TYP("IsAllowedConnectionCallback") ")V", (void*)JniSetUpFilterEngine },
-  { (char*)"ensureFilterEngine", (char*)"(J)V", (void*)JniEnsureFilterEngine }
+  { (char*)"ensureFilterEngine", (char*)"(J)V", (void*)JniEnsureFilterEngine },
+  { (char*)"setMinLogLevel", (char*)"(JI)V", (void*)JniSetMinLogLevel },
+  { (char*)"getForwardedLogMessagesCount", (char*)"(J)J", (void*)JniGetForwardedLogMessagesCount },
+  { (char*)"getFilteredLogMessagesCount", (char*)"(J)J", (void*)JniGetFilteredLogMessagesCount }
 };
 
 extern "C" JNIEXPORT void JNICALL Java_org_adblockplus_libadblockplus_Platform_registerNatives(JNIEnv *env, jclass clazz)
@@ -19,11 +19,26 @@
 #define JNI_PLATFORM_H
 
 #include <AdblockPlus/Platform.h>
+#include <AdblockPlus/JsValue.h>
+#include <map>
+#include <mutex>
+
+class JniLogSystemCallback;
 
 struct JniPlatform
 {
+  JniPlatform() : logSystem(nullptr)
+  {
+  }
+
   AdblockPlus::Scheduler scheduler;
   std::unique_ptr<AdblockPlus::Platform> platform;
+  // owned by platform, `nullptr` if default log system is used
+  JniLogSystemCallback* logSystem;
+  // JS functions evaluated once and reused, keyed by the (static) function source.
+  // Declared after `platform` to be destroyed before the JS engine
+  std::mutex jsFunctionsMutex;
+  std::map<const char*, AdblockPlus::JsValue> jsFunctions;
 };
 
 #endif /* JNI_PLATFORM_H */
\ No newline at end of file
@@ -35,17 +35,14 @@ JniShowNotificationCallback::JniShowNotificationCallback(JNIEnv* env,
     jobject callbackObject)
     : JniCallbackBase(env, callbackObject)
 {
+  method = GetCallbackMethodID(env, "showNotificationCallback",
+      "(" TYP("Notification") ")V");
 }
 
 void JniShowNotificationCallback::Callback(AdblockPlus::Notification&& notification)
 {
   JNIEnvAcquire env(GetJavaVM());
 
-  jmethodID method = env->GetMethodID(
-      *JniLocalReference<jclass>(*env,
-          env->GetObjectClass(GetCallbackObject())),
-      "showNotificationCallback", "(" TYP("Notification") ")V");
-
   if (method)
   {
     JniLocalReference<jobject> jNotification(*env, NewJniNotification(*env, std::move(notification)));
@@ -35,18 +35,14 @@ JniUpdateAvailableCallback::JniUpdateAvailableCallback(
   JNIEnv* env, jobject callbackObject)
   : JniCallbackBase(env, callbackObject)
 {
+  method = GetCallbackMethodID(env, "updateAvailableCallback",
+      "(Ljava/lang/String;)V");
 }
 
 void JniUpdateAvailableCallback::Callback(const std::string& arg)
 {
   JNIEnvAcquire env(GetJavaVM());
 
-  jmethodID method = env->GetMethodID(
-      *JniLocalReference<jclass>(*env,
-          env->GetObjectClass(GetCallbackObject())),
-      "updateAvailableCallback",
-      "(Ljava/lang/String;)V");
-
   if (method)
   {
     JniLocalReference<jstring> jArg(*env, env->NewStringUTF(arg.c_str()));
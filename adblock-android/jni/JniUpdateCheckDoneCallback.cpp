@@ -35,18 +35,14 @@ JniUpdateCheckDoneCallback::JniUpdateCheckDoneCallback(
   JNIEnv* env, jobject callbackObject)
   : JniCallbackBase(env, callbackObject)
 {
+  method = GetCallbackMethodID(env, "updateCheckDoneCallback",
+      "(Ljava/lang/String;)V");
 }
 
 void JniUpdateCheckDoneCallback::Callback(const std::string& arg)
 {
   JNIEnvAcquire env(GetJavaVM());
 
-  jmethodID method = env->GetMethodID(
-      *JniLocalReference<jclass>(*env,
-          env->GetObjectClass(GetCallbackObject())),
-      "updateCheckDoneCallback",
-      "(Ljava/lang/String;)V");
-
   if (method)
   {
     JniLocalReference<jstring> jArg(*env, env->NewStringUTF(arg.c_str()));
@@ -21,11 +21,14 @@
 // precached in JNI_OnLoad and released in JNI_OnUnload
 JniGlobalReference<jclass>* headerEntryClass;
 JniGlobalReference<jclass>* serverResponseClass;
+jmethodID headerEntryCtor;
 
 void JniWebRequest_OnLoad(JavaVM* vm, JNIEnv* env, void* reserved)
 {
   headerEntryClass = new JniGlobalReference<jclass>(env, env->FindClass(PKG("HeaderEntry")));
   serverResponseClass = new JniGlobalReference<jclass>(env, env->FindClass(PKG("ServerResponse")));
+  headerEntryCtor = env->GetMethodID(headerEntryClass->Get(), "<init>",
+      "(Ljava/lang/String;Ljava/lang/String;)V");
 }
 
 void JniWebRequest_OnUnload(JavaVM* vm, JNIEnv* env, void* reserved)
@@ -46,6 +49,8 @@ void JniWebRequest_OnUnload(JavaVM* vm, JNIEnv* env, void* reserved)
 JniWebRequest::JniWebRequest(JNIEnv* env, jobject callbackObject)
   : JniCallbackBase(env, callbackObject)
 {
+  method = GetCallbackMethodID(env, "httpGET",
+      "(Ljava/lang/String;Ljava/util/List;)" TYP("ServerResponse"));
 }
 
 AdblockPlus::ServerResponse JniWebRequest::GET(const std::string& url,
@@ -53,12 +58,6 @@ AdblockPlus::ServerResponse JniWebRequest::GET(const std::string& url,
 {
   JNIEnvAcquire env(GetJavaVM());
 
-  jmethodID method = env->GetMethodID(
-      *JniLocalReference<jclass>(*env,
-          env->GetObjectClass(GetCallbackObject())),
-      "httpGET",
-      "(Ljava/lang/String;Ljava/util/List;)" TYP("ServerResponse"));
-
   AdblockPlus::ServerResponse sResponse;
   sResponse.status = AdblockPlus::IWebRequest::NS_ERROR_FAILURE;
 
@@ -124,11 +123,8 @@ AdblockPlus::ServerResponse JniWebRequest::GET(const std::string& url,
 jobject JniWebRequest::NewTuple(JNIEnv* env, const std::string& a,
     const std::string& b) const
 {
-  jmethodID factory = env->GetMethodID(headerEntryClass->Get(), "<init>",
-      "(Ljava/lang/String;Ljava/lang/String;)V");
-
   JniLocalReference<jstring> strA(env, env->NewStringUTF(a.c_str()));
   JniLocalReference<jstring> strB(env, env->NewStringUTF(b.c_str()));
 
-  return env->NewObject(headerEntryClass->Get(), factory, *strA, *strB);
+  return env->NewObject(headerEntryClass->Get(), headerEntryCtor, *strA, *strB);
 }
\ No newline at end of file
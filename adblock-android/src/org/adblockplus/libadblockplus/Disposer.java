@@ -19,14 +19,46 @@ package org.adblockplus.libadblockplus;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class Disposer extends WeakReference<Disposable>
 {
   static final ReferenceQueue<Disposable> referenceQueue = new ReferenceQueue<Disposable>();
-  private static final HashSet<Disposer> disposerSet = new HashSet<Disposer>();
+
+  // keeps disposers reachable until disposed,
+  // concurrent (striped) not to make creating and disposing native objects on many threads contend
+  private static final Set<Disposer> disposerSet =
+    Collections.newSetFromMap(new ConcurrentHashMap<Disposer, Boolean>());
+
+  private static final AtomicIntegerFieldUpdater<Disposer> disposedUpdater =
+    AtomicIntegerFieldUpdater.newUpdater(Disposer.class, "disposed");
+
+  // keyed by referent class (eg. JsValue, Filter, Subscription),
+  // no global counters not to make creating objects of different types contend
+  private static final ConcurrentMap<Class<?>, Stats> typeStats =
+    new ConcurrentHashMap<Class<?>, Stats>();
+
+  // written by cleaner thread only
+  private static volatile int cleanerBacklog = 0;
+  private static volatile long cleanerTotalNanos = 0;
+  private static volatile long cleanerMaxNanos = 0;
+
+  private static volatile boolean allocationSiteCaptureEnabled = false;
+  private static volatile ReclaimListener reclaimListener;
+
   private final Disposable disposable;
-  private volatile boolean disposed = false;
+  private final Stats stats;
+  private final Throwable allocationSite;
+  private volatile int disposed = 0;
 
   static
   {
@@ -40,32 +72,235 @@ public final class Disposer extends WeakReference<Disposable>
   {
     super(referent, referenceQueue);
     this.disposable = disposable;
+    this.stats = getStats(referent.getClass());
+    this.allocationSite = (allocationSiteCaptureEnabled
+      ? new Throwable("Allocated " + referent.getClass().getName())
+      : null);
+
+    this.stats.onCreated();
+    disposerSet.add(this);
 
-    synchronized (disposerSet)
+    // referent can be collected and disposed by cleaner thread before it's added
+    if (disposed != 0)
     {
-      disposerSet.add(this);
+      disposerSet.remove(this);
     }
   }
 
-  public synchronized void dispose()
+  private static Stats getStats(final Class<?> type)
   {
-    if (!this.disposed)
+    Stats stats = typeStats.get(type);
+    if (stats == null)
     {
-      try
+      stats = new Stats();
+      final Stats existing = typeStats.putIfAbsent(type, stats);
+      if (existing != null)
       {
-        this.disposable.dispose();
+        stats = existing;
       }
-      catch (final Throwable t)
+    }
+    return stats;
+  }
+
+  public void dispose()
+  {
+    dispose(false);
+  }
+
+  // returns `true` if disposed by this call
+  private boolean dispose(final boolean reclaimed)
+  {
+    // the first caller disposes, no lock is needed
+    if (!disposedUpdater.compareAndSet(this, 0, 1))
+    {
+      return false;
+    }
+
+    try
+    {
+      this.disposable.dispose();
+    }
+    catch (final Throwable t)
+    {
+      // catch to remove from the set on all circumstances
+    }
+
+    disposerSet.remove(this);
+    this.stats.onDisposed(reclaimed);
+    return true;
+  }
+
+  /**
+   * Get count of the objects not disposed yet
+   * @return count
+   */
+  public static int getUndisposedCount()
+  {
+    return disposerSet.size();
+  }
+
+  /**
+   * Get stats of all the objects (aggregated from stats per type on every call).
+   * Peak live count is the sum of peaks per type, so it's an upper bound.
+   * @return stats snapshot
+   */
+  public static Stats getTotalStats()
+  {
+    final Stats total = new Stats();
+    for (final Stats stats : typeStats.values())
+    {
+      total.liveCount.addAndGet(stats.getLiveCount());
+      total.peakLiveCount.addAndGet(stats.getPeakLiveCount());
+      total.createdCount.addAndGet(stats.getCreatedCount());
+      total.reclaimedCount.addAndGet(stats.getReclaimedCount());
+    }
+    return total;
+  }
+
+  /**
+   * Get stats per object type
+   * @return stats keyed by object class (eg. `Filter.class`)
+   */
+  public static Map<Class<?>, Stats> getTypeStats()
+  {
+    return Collections.unmodifiableMap(typeStats);
+  }
+
+  /**
+   * Get count of the objects collected by GC and taken by cleaner thread but not disposed yet.
+   * Cleaner thread takes all the enqueued objects at once, so objects enqueued meanwhile
+   * are counted when the current ones are disposed.
+   * @return count
+   */
+  public static int getCleanerBacklog()
+  {
+    return cleanerBacklog;
+  }
+
+  /**
+   * Get total time cleaner thread spent for disposing objects collected by GC
+   * @return time in nanoseconds
+   */
+  public static long getCleanerTotalNanos()
+  {
+    return cleanerTotalNanos;
+  }
+
+  /**
+   * Get max time cleaner thread spent for disposing a single object collected by GC
+   * @return time in nanoseconds
+   */
+  public static long getCleanerMaxNanos()
+  {
+    return cleanerMaxNanos;
+  }
+
+  /**
+   * Capture allocation site (stack trace) of the objects created after this call,
+   * passed to `ReclaimListener` if an object is collected by GC and not disposed explicitly.
+   * Capturing is expensive, so it should be used for debugging only.
+   * @param enabled `true` to capture
+   */
+  public static void setAllocationSiteCaptureEnabled(final boolean enabled)
+  {
+    allocationSiteCaptureEnabled = enabled;
+  }
+
+  public static boolean isAllocationSiteCaptureEnabled()
+  {
+    return allocationSiteCaptureEnabled;
+  }
+
+  /**
+   * Set listener notified about objects collected by GC and not disposed explicitly
+   * @param listener listener or `null`
+   */
+  public static void setReclaimListener(final ReclaimListener listener)
+  {
+    reclaimListener = listener;
+  }
+
+  /**
+   * Listener notified on cleaner thread
+   */
+  public interface ReclaimListener
+  {
+    /**
+     * Object is collected by GC and not disposed explicitly
+     * @param allocationSite allocation stack trace
+     *                       or `null` if not captured (see `setAllocationSiteCaptureEnabled(boolean)`)
+     */
+    void onReclaimed(Throwable allocationSite);
+  }
+
+  /**
+   * Objects count stats
+   */
+  public static final class Stats
+  {
+    private final AtomicInteger liveCount = new AtomicInteger(0);
+    private final AtomicInteger peakLiveCount = new AtomicInteger(0);
+    private final AtomicLong createdCount = new AtomicLong(0);
+    private final AtomicLong reclaimedCount = new AtomicLong(0);
+
+    private void onCreated()
+    {
+      createdCount.incrementAndGet();
+      final int live = liveCount.incrementAndGet();
+      int peak;
+      while (live > (peak = peakLiveCount.get()))
       {
-        // catch to set state to 'disposed' on all circumstances
+        if (peakLiveCount.compareAndSet(peak, live))
+        {
+          break;
+        }
       }
+    }
 
-      this.disposed = true;
-      synchronized (disposerSet)
+    private void onDisposed(final boolean reclaimed)
+    {
+      liveCount.decrementAndGet();
+      if (reclaimed)
       {
-        disposerSet.remove(this);
+        reclaimedCount.incrementAndGet();
       }
     }
+
+    /**
+     * Get count of the objects not disposed yet
+     * @return count
+     */
+    public int getLiveCount()
+    {
+      return liveCount.get();
+    }
+
+    /**
+     * Get max count of the objects not disposed at the same time
+     * @return count
+     */
+    public int getPeakLiveCount()
+    {
+      return peakLiveCount.get();
+    }
+
+    /**
+     * Get count of the created objects
+     * @return count
+     */
+    public long getCreatedCount()
+    {
+      return createdCount.get();
+    }
+
+    /**
+     * Get count of the objects collected by GC and disposed by cleaner thread (not explicitly)
+     * @return count
+     */
+    public long getReclaimedCount()
+    {
+      return reclaimedCount.get();
+    }
   }
 
   private static final class Cleaner implements Runnable
@@ -78,16 +313,58 @@ public final class Disposer extends WeakReference<Disposable>
     @Override
     public void run()
     {
+      final List<Disposer> disposers = new ArrayList<Disposer>();
       for (;;)
       {
         try
         {
-          ((Disposer) Disposer.referenceQueue.remove()).dispose();
+          // take all the enqueued objects, so they can be counted as backlog
+          disposers.add((Disposer) Disposer.referenceQueue.remove());
+          Disposer disposer;
+          while ((disposer = (Disposer) Disposer.referenceQueue.poll()) != null)
+          {
+            disposers.add(disposer);
+          }
+          cleanerBacklog = disposers.size();
+
+          for (int i = 0; i < disposers.size(); i++)
+          {
+            final Disposer eachDisposer = disposers.get(i);
+            final long started = System.nanoTime();
+            final boolean reclaimed = eachDisposer.dispose(true);
+
+            final long elapsed = System.nanoTime() - started;
+            cleanerTotalNanos += elapsed;
+            if (elapsed > cleanerMaxNanos)
+            {
+              cleanerMaxNanos = elapsed;
+            }
+            cleanerBacklog = disposers.size() - i - 1;
+
+            // not disposed explicitly
+            final ReclaimListener listener = reclaimListener;
+            if (reclaimed && listener != null)
+            {
+              try
+              {
+                listener.onReclaimed(eachDisposer.allocationSite);
+              }
+              catch (final Throwable t)
+              {
+                // don't leave the rest of the batch undisposed
+              }
+            }
+          }
         }
         catch (final Throwable t)
         {
           // ignored
         }
+        finally
+        {
+          disposers.clear();
+          cleanerBacklog = 0;
+        }
       }
     }
   }
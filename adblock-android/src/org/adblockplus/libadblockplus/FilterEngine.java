@@ -21,6 +21,19 @@ import java.util.List;
 
 public final class FilterEngine
 {
+  /**
+   * Match verdicts (see `matchVerdict(...)` and `matchesBatch(...)`)
+   */
+  public static final int MATCH_NONE = 0;
+  public static final int MATCH_BLOCKING = 1;
+  public static final int MATCH_EXCEPTION = 2;
+  public static final int MATCH_TYPE_MASK = 0x0F;
+
+  /**
+   * Match verdict flag: matched filter text contains `||`
+   */
+  public static final int MATCH_FLAG_DOMAIN_SPECIFIC = 0x10;
+
   protected final long ptr;
 
   static
@@ -106,6 +119,37 @@ public final class FilterEngine
     return getElementHidingSelectors(this.ptr, domain);
   }
 
+  /**
+   * Get selectors applied on every domain unconditionally.
+   * Generic and domain selectors together are equal to `getElementHidingSelectors(domain)`.
+   * @return generic selectors
+   */
+  public List<String> getGenericElementHidingSelectors()
+  {
+    return getGenericElementHidingSelectors(this.ptr);
+  }
+
+  /**
+   * Get selectors for the domain except generic ones (see `getGenericElementHidingSelectors()`)
+   * @param domain domain
+   * @return domain selectors
+   */
+  public List<String> getDomainElementHidingSelectors(final String domain)
+  {
+    return getDomainElementHidingSelectors(this.ptr, domain);
+  }
+
+  /**
+   * Get element hiding emulation selectors for the domain
+   * (eg. `div:-abp-has(.ad)`, can't be applied with CSS and should be matched in the page)
+   * @param domain domain
+   * @return emulation selectors
+   */
+  public List<String> getElementHidingEmulationSelectors(final String domain)
+  {
+    return getElementHidingEmulationSelectors(this.ptr, domain);
+  }
+
   public void showNextNotification(final String url)
   {
     showNextNotification(this.ptr, url);
@@ -128,12 +172,39 @@ public final class FilterEngine
 
   public Filter matches(final String url, final ContentType contentType, final String documentUrl)
   {
-    return matches(this.ptr, url, contentType, documentUrl);
+    return matches(this.ptr, url, contentType.ordinal(), documentUrl);
   }
 
   public Filter matches(final String url, final ContentType contentType, final String[] documentUrls)
   {
-    return matches(this.ptr, url, contentType, documentUrls);
+    return matches(this.ptr, url, contentType.ordinal(), documentUrls);
+  }
+
+  /**
+   * Match URL without creating `Filter` instance
+   * @param url URL to match
+   * @param contentType content type
+   * @param documentUrls document URLs (immediate parent first)
+   * @return verdict: `MATCH_NONE`, `MATCH_BLOCKING` or `MATCH_EXCEPTION`
+   *         optionally combined with `MATCH_FLAG_DOMAIN_SPECIFIC`
+   */
+  public int matchVerdict(final String url, final ContentType contentType, final String[] documentUrls)
+  {
+    return matchVerdict(this.ptr, url, contentType.ordinal(), documentUrls);
+  }
+
+  /**
+   * Match many URLs sharing the same document URLs in one call
+   * @param urls URLs to match
+   * @param contentTypeOrdinals `ContentType` ordinals, one for each URL
+   * @param documentUrls document URLs (immediate parent first)
+   * @return verdicts, one for each URL: `MATCH_NONE`, `MATCH_BLOCKING` or `MATCH_EXCEPTION`
+   *         optionally combined with `MATCH_FLAG_DOMAIN_SPECIFIC`
+   */
+  public byte[] matchesBatch(final String[] urls, final int[] contentTypeOrdinals,
+                             final String[] documentUrls)
+  {
+    return matchesBatch(this.ptr, urls, contentTypeOrdinals, documentUrls);
   }
 
   public boolean isDocumentWhitelisted(String url, String[] documentUrls)
@@ -230,6 +301,12 @@ public final class FilterEngine
 
   private final static native List<String> getElementHidingSelectors(long ptr, String domain);
 
+  private final static native List<String> getGenericElementHidingSelectors(long ptr);
+
+  private final static native List<String> getDomainElementHidingSelectors(long ptr, String domain);
+
+  private final static native List<String> getElementHidingEmulationSelectors(long ptr, String domain);
+
   private final static native void showNextNotification(long ptr, String url);
 
   private final static native void setShowNotificationCallback(long ptr, long callbackPtr);
@@ -238,9 +315,13 @@ public final class FilterEngine
 
   private final static native JsValue getPref(long ptr, String pref);
 
-  private final static native Filter matches(long ptr, String url, ContentType contentType, String documentUrl);
+  private final static native Filter matches(long ptr, String url, int contentTypeOrdinal, String documentUrl);
+
+  private final static native Filter matches(long ptr, String url, int contentTypeOrdinal, String[] documentUrls);
+
+  private final static native int matchVerdict(long ptr, String url, int contentTypeOrdinal, String[] documentUrls);
 
-  private final static native Filter matches(long ptr, String url, ContentType contentType, String[] documentUrls);
+  private final static native byte[] matchesBatch(long ptr, String[] urls, int[] contentTypeOrdinals, String[] documentUrls);
 
   private final static native boolean isDocumentWhitelisted(long ptr, String url, String[] documentUrls);
 
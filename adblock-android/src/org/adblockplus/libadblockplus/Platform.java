@@ -75,6 +75,36 @@ public class Platform implements Disposable
     return new FilterEngine(this.ptr);
   }
 
+  /**
+   * Set min level of the messages passed to LogSystem.
+   * Messages of lower levels are dropped in native code without calling Java.
+   * Has no effect if default log system is used (null LogSystem passed to constructor).
+   * @param level min log level
+   */
+  public void setMinLogLevel(final LogSystem.LogLevel level)
+  {
+    setMinLogLevel(this.ptr, level.ordinal());
+  }
+
+  /**
+   * Get count of the messages passed to LogSystem
+   * @return messages count
+   */
+  public long getForwardedLogMessagesCount()
+  {
+    return getForwardedLogMessagesCount(this.ptr);
+  }
+
+  /**
+   * Get count of the messages dropped as their level is lower than min log level
+   * (see `setMinLogLevel(LogLevel)`)
+   * @return messages count
+   */
+  public long getFilteredLogMessagesCount()
+  {
+    return getFilteredLogMessagesCount(this.ptr);
+  }
+
   @Override
   public void dispose()
   {
@@ -109,5 +139,11 @@ public class Platform implements Disposable
 
   private final static native void ensureFilterEngine(long ptr);
 
+  private final static native void setMinLogLevel(long ptr, int logLevelOrdinal);
+
+  private final static native long getForwardedLogMessagesCount(long ptr);
+
+  private final static native long getFilteredLogMessagesCount(long ptr);
+
   private final static native void dtor(long ptr);
 }
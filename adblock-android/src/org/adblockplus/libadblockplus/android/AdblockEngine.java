@@ -18,16 +18,13 @@
 package org.adblockplus.libadblockplus.android;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.adblockplus.libadblockplus.AppInfo;
-import org.adblockplus.libadblockplus.Filter;
 import org.adblockplus.libadblockplus.FilterChangeCallback;
 import org.adblockplus.libadblockplus.FilterEngine;
 import org.adblockplus.libadblockplus.FilterEngine.ContentType;
@@ -52,6 +49,14 @@ public final class AdblockEngine
   // default base path to store subscription files in android app
   public static final String BASE_PATH_DIRECTORY = "adblock";
 
+  // default max count of blocking decisions to be cached (see `Builder.setMatchesCacheSize(int)`)
+  public static final int DEFAULT_MATCHES_CACHE_SIZE = 1024;
+
+  // default max size of element hiding selectors to be cached (see `Builder.setElemhideCacheSize(int)`)
+  public static final int DEFAULT_ELEMHIDE_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+  private static final String EMPTY_ELEMHIDE_CSS_STRING = "";
+
   private static final String TAG = Utils.getTag(AdblockEngine.class);
 
   /*
@@ -72,10 +77,16 @@ public final class AdblockEngine
   private volatile UpdateAvailableCallback updateAvailableCallback;
   private volatile UpdateCheckDoneCallback updateCheckDoneCallback;
   private volatile FilterChangeCallback filterChangeCallback;
+  private volatile FilterChangeCallback cacheInvalidatingCallback;
   private volatile ShowNotificationCallback showNotificationCallback;
   private volatile boolean elemhideEnabled;
   private volatile boolean enabled = true;
+  private final AtomicInteger decisionsGeneration = new AtomicInteger(0);
   private volatile List<String> whitelistedDomains;
+  private volatile DomainSuffixSet whitelistedDomainsSet = DomainSuffixSet.build(null);
+  private volatile MatchesCache matchesCache;
+  private volatile ElemhideSelectorsCache elemhideCache;
+  private final InFlightMatches inFlightMatches = new InFlightMatches();
 
   public static AppInfo generateAppInfo(final Context context, boolean developmentBuild,
                                         String application, String applicationVersion)
@@ -136,6 +147,7 @@ public final class AdblockEngine
     private String basePath;
     private IsAllowedConnectionCallback isAllowedConnectionCallback;
     private Long v8IsolateProviderPtr;
+    private LogSystem.LogLevel minLogLevel;
 
     private AdblockEngine engine;
 
@@ -143,6 +155,8 @@ public final class AdblockEngine
     {
       engine = new AdblockEngine();
       engine.elemhideEnabled = true;
+      engine.matchesCache = new MatchesCache(DEFAULT_MATCHES_CACHE_SIZE);
+      engine.elemhideCache = new ElemhideSelectorsCache(DEFAULT_ELEMHIDE_CACHE_SIZE_BYTES);
 
       // we can't create JsEngine and FilterEngine right now as it starts to download subscriptions
       // and requests (AndroidWebRequest and probbaly wrappers) are not specified yet
@@ -150,12 +164,46 @@ public final class AdblockEngine
       this.basePath = basePath;
     }
 
+    /**
+     * Set min level of the engine log messages to be printed
+     * @param level min log level, by default `WARN` for release builds
+     *              and `TRACE` for development builds (see `AppInfo.developmentBuild`)
+     * @return this builder
+     */
+    public Builder setMinLogLevel(LogSystem.LogLevel level)
+    {
+      this.minLogLevel = level;
+      return this;
+    }
+
     public Builder enableElementHiding(boolean enable)
     {
       engine.elemhideEnabled = enable;
       return this;
     }
 
+    /**
+     * Set max count of blocking decisions to be cached
+     * @param size max decisions count or `0` to disable caching
+     * @return this builder
+     */
+    public Builder setMatchesCacheSize(int size)
+    {
+      engine.matchesCache = (size > 0 ? new MatchesCache(size) : null);
+      return this;
+    }
+
+    /**
+     * Set max size of element hiding selectors to be cached
+     * @param sizeBytes max size in bytes or `0` to disable caching
+     * @return this builder
+     */
+    public Builder setElemhideCacheSize(int sizeBytes)
+    {
+      engine.elemhideCache = (sizeBytes > 0 ? new ElemhideSelectorsCache(sizeBytes) : null);
+      return this;
+    }
+
     public Builder preloadSubscriptions(Context context,
                                         Map<String, Integer> urlToResourceIdMap,
                                         AndroidWebRequestResourceWrapper.Storage storage)
@@ -240,10 +288,10 @@ public final class AdblockEngine
         engine.filterEngine.setShowNotificationCallback(engine.showNotificationCallback);
       }
 
-      if (engine.filterChangeCallback != null)
-      {
-        engine.filterEngine.setFilterChangeCallback(engine.filterChangeCallback);
-      }
+      // cached decisions are outdated after any filter or subscription change,
+      // the callback set in builder (if any) is notified after invalidation
+      engine.cacheInvalidatingCallback = new CacheInvalidatingFilterChangeCallback(engine);
+      engine.filterEngine.setFilterChangeCallback(engine.cacheInvalidatingCallback);
     }
 
     public AdblockEngine build()
@@ -265,8 +313,18 @@ public final class AdblockEngine
 
     private void createEngines()
     {
-      engine.logSystem = new AndroidLogSystem();
+      LogSystem.LogLevel logLevel = minLogLevel;
+      if (logLevel == null)
+      {
+        logLevel = (appInfo.developmentBuild
+          ? LogSystem.LogLevel.TRACE
+          : AndroidLogSystem.DEFAULT_RELEASE_MIN_LOG_LEVEL);
+      }
+      final AndroidLogSystem logSystem = new AndroidLogSystem(logLevel);
+      engine.logSystem = logSystem;
       engine.platform = new Platform(engine.logSystem, engine.webRequest, basePath);
+      // less verbose messages are dropped in native code, not to call Java for each of them
+      engine.platform.setMinLogLevel(logSystem.getMinLogLevel());
       if (v8IsolateProviderPtr != null)
       {
         engine.platform.setUpJsEngine(appInfo, v8IsolateProviderPtr);
@@ -297,7 +355,7 @@ public final class AdblockEngine
         this.filterEngine.removeUpdateAvailableCallback();
       }
 
-      if (this.filterChangeCallback != null)
+      if (this.cacheInvalidatingCallback != null)
       {
         this.filterEngine.removeFilterChangeCallback();
       }
@@ -318,6 +376,12 @@ public final class AdblockEngine
       this.updateAvailableCallback = null;
     }
 
+    if (this.cacheInvalidatingCallback != null)
+    {
+      this.cacheInvalidatingCallback.dispose();
+      this.cacheInvalidatingCallback = null;
+    }
+
     if (this.filterChangeCallback != null)
     {
       this.filterChangeCallback.dispose();
@@ -438,6 +502,7 @@ public final class AdblockEngine
         s.dispose();
       }
     }
+    invalidateCaches();
   }
 
   public void setSubscription(final String url)
@@ -456,6 +521,7 @@ public final class AdblockEngine
         sub.dispose();
       }
     }
+    invalidateCaches();
   }
 
   public void setSubscriptions(Collection<String> urls)
@@ -477,11 +543,13 @@ public final class AdblockEngine
         }
       }
     }
+    invalidateCaches();
   }
 
   public void setEnabled(final boolean enabled)
   {
     this.enabled = enabled;
+    invalidateCaches();
   }
 
   public boolean isEnabled()
@@ -502,6 +570,7 @@ public final class AdblockEngine
   public void setAcceptableAdsEnabled(final boolean enabled)
   {
     filterEngine.setAcceptableAdsEnabled(enabled);
+    invalidateCaches();
   }
 
   public String getDocumentationLink()
@@ -524,43 +593,146 @@ public final class AdblockEngine
       return false;
     }
 
-    final Filter filter = this.filterEngine.matches(fullUrl, contentType, referrerChainArray);
+    final MatchesCache cache = this.matchesCache;
 
-    if (filter == null)
+    // generation should be taken before the decision is made
+    // to ignore the decision if filters are changed meanwhile
+    final int generation = (cache != null ? cache.getGeneration() : 0);
+    final String key = MatchesCache.buildKey(fullUrl, contentType, referrerChainArray);
+    if (cache != null)
     {
-      return false;
+      final Boolean cachedMatches = cache.get(key);
+      if (cachedMatches != null)
+      {
+        return cachedMatches;
+      }
     }
 
-    try
+    // concurrent identical lookups share one native call
+    return inFlightMatches.matches(key, generation, new InFlightMatches.Decision()
     {
-      // hack: if there is no referrer, block only if filter is domain-specific
-      // (to re-enable in-app ads blocking, proposed on 12.11.2012 Monday meeting)
-      // (documentUrls contains the referrers on Android)
-      try
+      @Override
+      public boolean matches()
       {
-        JsValue jsText = filter.getProperty("text");
-        try
-        {
-          if (referrerChainArray.length == 0 && (jsText.toString()).contains("||"))
-          {
-            return false;
-          }
-        }
-        finally
+        return matchesAndCache(fullUrl, contentType, referrerChainArray, cache, key, generation);
+      }
+    });
+  }
+
+  private boolean matchesAndCache(final String fullUrl, final ContentType contentType,
+                                  final String[] referrerChainArray, final MatchesCache cache,
+                                  final String key, final int generation)
+  {
+    final boolean matches = matchesFilter(fullUrl, contentType, referrerChainArray);
+    if (cache != null)
+    {
+      cache.put(key, matches, generation);
+    }
+    return matches;
+  }
+
+  /**
+   * Get how many native matching calls were saved by sharing the result of
+   * concurrent identical `matches(String, ContentType, String[])` calls
+   * @return saved calls count
+   */
+  public long getCoalescedMatchesCount()
+  {
+    return inFlightMatches.getCoalescedCount();
+  }
+
+  private boolean matchesFilter(final String fullUrl, final ContentType contentType,
+                                final String[] referrerChainArray)
+  {
+    // verdict is a primitive, so no Filter and JsValue objects are created
+    final int verdict = this.filterEngine.matchVerdict(fullUrl, contentType, referrerChainArray);
+    return isBlockingVerdict(verdict, referrerChainArray);
+  }
+
+  /**
+   * Batch variant of `matches(String, ContentType, String[])`
+   * for many resources loaded from the same document
+   * @param fullUrls resources URLs
+   * @param contentTypes resources content types, one for each URL
+   * @param referrerChainArray referrers shared by all the resources
+   * @return decisions, one for each URL: `true` if should be blocked, `false` otherwise
+   */
+  public boolean[] matches(final String[] fullUrls, final ContentType[] contentTypes,
+                           final String[] referrerChainArray)
+  {
+    if (fullUrls.length != contentTypes.length)
+    {
+      throw new IllegalArgumentException("URLs and content types count mismatch");
+    }
+
+    final boolean[] result = new boolean[fullUrls.length];
+    if (!enabled || fullUrls.length == 0)
+    {
+      return result;
+    }
+
+    // look up in the cache first and match only the resources not cached yet
+    final MatchesCache cache = this.matchesCache;
+    final int generation = (cache != null ? cache.getGeneration() : 0);
+    final String[] keys = (cache != null ? new String[fullUrls.length] : null);
+    final int[] notCachedIndices = new int[fullUrls.length];
+    int notCachedCount = 0;
+
+    for (int i = 0; i < fullUrls.length; i++)
+    {
+      if (cache != null)
+      {
+        keys[i] = MatchesCache.buildKey(fullUrls[i], contentTypes[i], referrerChainArray);
+        final Boolean cachedMatches = cache.get(keys[i]);
+        if (cachedMatches != null)
         {
-          jsText.dispose();
+          result[i] = cachedMatches;
+          continue;
         }
       }
-      catch (NullPointerException e)
+      notCachedIndices[notCachedCount++] = i;
+    }
+
+    if (notCachedCount == 0)
+    {
+      return result;
+    }
+
+    final String[] urls = new String[notCachedCount];
+    final int[] contentTypeOrdinals = new int[notCachedCount];
+    for (int i = 0; i < notCachedCount; i++)
+    {
+      urls[i] = fullUrls[notCachedIndices[i]];
+      contentTypeOrdinals[i] = contentTypes[notCachedIndices[i]].ordinal();
+    }
+
+    final byte[] verdicts = this.filterEngine.matchesBatch(urls, contentTypeOrdinals, referrerChainArray);
+    for (int i = 0; i < notCachedCount; i++)
+    {
+      final int index = notCachedIndices[i];
+      result[index] = isBlockingVerdict(verdicts[i], referrerChainArray);
+      if (cache != null)
       {
+        cache.put(keys[index], result[index], generation);
       }
-
-      return filter.getType() != Filter.Type.EXCEPTION;
     }
-    finally
+
+    return result;
+  }
+
+  private static boolean isBlockingVerdict(final int verdict, final String[] referrerChainArray)
+  {
+    if ((verdict & FilterEngine.MATCH_TYPE_MASK) != FilterEngine.MATCH_BLOCKING)
     {
-      filter.dispose();
+      return false;
     }
+
+    // hack: if there is no referrer, block only if filter is domain-specific
+    // (to re-enable in-app ads blocking, proposed on 12.11.2012 Monday meeting)
+    // (documentUrls contains the referrers on Android)
+    return !(referrerChainArray != null
+      && referrerChainArray.length == 0
+      && (verdict & FilterEngine.MATCH_FLAG_DOMAIN_SPECIFIC) != 0);
   }
 
   public boolean isDocumentWhitelisted(final String url, final String[] referrerChainArray)
@@ -570,24 +742,26 @@ public final class AdblockEngine
 
   public boolean isDomainWhitelisted(final String url, final String[] referrerChainArray)
   {
-    if (whitelistedDomains == null)
+    final DomainSuffixSet domainsSet = this.whitelistedDomainsSet;
+    if (domainsSet.isEmpty())
     {
       return false;
     }
 
-    // using Set to remove duplicates
-    Set<String> referrersAndResourceUrls = new HashSet<String>();
-    if (referrerChainArray != null)
+    // host is extracted in Java, not in JS engine
+    if (domainsSet.matchesUrl(url))
     {
-      referrersAndResourceUrls.addAll(Arrays.asList(referrerChainArray));
+      return true;
     }
-    referrersAndResourceUrls.add(url);
 
-    for (String eachUrl : referrersAndResourceUrls)
+    if (referrerChainArray != null)
     {
-      if (whitelistedDomains.contains(filterEngine.getHostFromURL(eachUrl)))
+      for (String eachReferrer : referrerChainArray)
       {
-        return true;
+        if (domainsSet.matchesUrl(eachReferrer))
+        {
+          return true;
+        }
       }
     }
 
@@ -623,9 +797,100 @@ public final class AdblockEngine
     {
       return new ArrayList<String>();
     }
+    return getElementHidingSelectors(domain);
+  }
+
+  /**
+   * Get element hiding selectors for the domain without whitelisting checks
+   * (the caller is responsible for the checks, eg. once per page)
+   * @param domain domain
+   * @return selectors, empty if element hiding is disabled
+   */
+  public List<String> getElementHidingSelectors(final String domain)
+  {
+    if (!this.enabled || !this.elemhideEnabled)
+    {
+      return new ArrayList<String>();
+    }
     return this.filterEngine.getElementHidingSelectors(domain);
   }
 
+  /**
+   * Get element hiding selectors applied on every domain as ready to inject CSS text.
+   * Built once and cached until filters, subscriptions or settings are changed.
+   * @return CSS text, empty if element hiding is disabled
+   */
+  public String getGenericElementHidingCss()
+  {
+    if (!this.enabled || !this.elemhideEnabled)
+    {
+      return EMPTY_ELEMHIDE_CSS_STRING;
+    }
+
+    final ElemhideSelectorsCache cache = this.elemhideCache;
+    if (cache == null)
+    {
+      return ElemhideCssBuilder.build(this.filterEngine.getGenericElementHidingSelectors());
+    }
+
+    final int generation = cache.getGeneration();
+    String payload = cache.getGeneric();
+    if (payload == null)
+    {
+      payload = ElemhideCssBuilder.build(this.filterEngine.getGenericElementHidingSelectors());
+      cache.putGeneric(payload, generation);
+    }
+    return payload;
+  }
+
+  /**
+   * Get element hiding selectors for the domain except generic ones
+   * (see `getGenericElementHidingCss()`) as ready to inject CSS text without whitelisting checks
+   * (the caller is responsible for the checks, eg. once per page).
+   * The result is cached until filters, subscriptions or settings are changed.
+   * @param domain domain
+   * @return CSS text, empty if element hiding is disabled
+   */
+  public String getDomainElementHidingCss(final String domain)
+  {
+    if (!this.enabled || !this.elemhideEnabled)
+    {
+      return EMPTY_ELEMHIDE_CSS_STRING;
+    }
+
+    final ElemhideSelectorsCache cache = this.elemhideCache;
+    if (cache == null)
+    {
+      return ElemhideCssBuilder.build(this.filterEngine.getDomainElementHidingSelectors(domain));
+    }
+
+    // remember the generation before getting the selectors,
+    // so the payload is not cached if filters are changed meanwhile
+    final int generation = cache.getGeneration();
+    String payload = cache.get(domain);
+    if (payload == null)
+    {
+      payload = ElemhideCssBuilder.build(this.filterEngine.getDomainElementHidingSelectors(domain));
+      cache.put(domain, payload, generation);
+    }
+    return payload;
+  }
+
+  /**
+   * Get element hiding emulation selectors for the domain without whitelisting checks
+   * (the caller is responsible for the checks, eg. once per page)
+   * @param domain domain
+   * @return emulation selectors, empty if element hiding is disabled
+   */
+  public List<String> getElementHidingEmulationSelectors(final String domain)
+  {
+    if (!this.enabled || !this.elemhideEnabled)
+    {
+      return new ArrayList<String>();
+    }
+    return this.filterEngine.getElementHidingEmulationSelectors(domain);
+  }
+
   public void checkForUpdates()
   {
     this.filterEngine.forceUpdateCheck(this.updateCheckDoneCallback);
@@ -636,9 +901,104 @@ public final class AdblockEngine
     return this.filterEngine;
   }
 
+  /**
+   * Get count of the engine log messages passed to Java
+   * @return messages count
+   */
+  public long getForwardedLogMessagesCount()
+  {
+    return this.platform.getForwardedLogMessagesCount();
+  }
+
+  /**
+   * Get count of the engine log messages dropped in native code as less verbose than min log level
+   * (see `Builder.setMinLogLevel(LogLevel)`)
+   * @return messages count
+   */
+  public long getFilteredLogMessagesCount()
+  {
+    return this.platform.getFilteredLogMessagesCount();
+  }
+
+  /**
+   * Get blocking decisions cache
+   * @return cache or `null` if disabled (see `Builder.setMatchesCacheSize(int)`)
+   */
+  public MatchesCache getMatchesCache()
+  {
+    return this.matchesCache;
+  }
+
+  /**
+   * Get element hiding selectors cache
+   * @return cache or `null` if disabled (see `Builder.setElemhideCacheSize(int)`)
+   */
+  public ElemhideSelectorsCache getElemhideCache()
+  {
+    return this.elemhideCache;
+  }
+
+  /**
+   * Get generation of the blocking and whitelisting decisions.
+   * Incremented when filters, subscriptions, settings or whitelisted domains are changed,
+   * so the decisions cached outside of the engine (eg. per page) can be discarded.
+   * @return generation
+   */
+  public int getDecisionsGeneration()
+  {
+    return decisionsGeneration.get();
+  }
+
+  private void invalidateCaches()
+  {
+    decisionsGeneration.incrementAndGet();
+
+    final MatchesCache cache = this.matchesCache;
+    if (cache != null)
+    {
+      cache.invalidate();
+    }
+
+    final ElemhideSelectorsCache elemhideCache = this.elemhideCache;
+    if (elemhideCache != null)
+    {
+      elemhideCache.invalidate();
+    }
+  }
+
+  private static final class CacheInvalidatingFilterChangeCallback extends FilterChangeCallback
+  {
+    private final AdblockEngine engine;
+
+    private CacheInvalidatingFilterChangeCallback(final AdblockEngine engine)
+    {
+      this.engine = engine;
+    }
+
+    @Override
+    public void filterChangeCallback(final String action, final JsValue jsValue)
+    {
+      engine.invalidateCaches();
+
+      final FilterChangeCallback callback = engine.filterChangeCallback;
+      if (callback != null)
+      {
+        callback.filterChangeCallback(action, jsValue);
+      }
+    }
+  }
+
+  /**
+   * Set whitelisted domains
+   * @param domains domains, subdomains are whitelisted too
+   *                (eg. `example.com` whitelists `www.example.com`)
+   */
   public void setWhitelistedDomains(List<String> domains)
   {
     this.whitelistedDomains = domains;
+    this.whitelistedDomainsSet = DomainSuffixSet.build(domains);
+    // domains whitelisting is not cached in the engine
+    decisionsGeneration.incrementAndGet();
   }
 
   public List<String> getWhitelistedDomains()
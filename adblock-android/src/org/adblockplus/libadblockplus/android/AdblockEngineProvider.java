@@ -53,7 +53,8 @@ public interface AdblockEngineProvider
   int getCounter();
 
   /**
-   * Get lock object to prevent AdblockEngine reference from being changed
+   * Get lock object to prevent AdblockEngine reference from being changed.
+   * Serializes all the engine clients, see `ConcurrentEngineProvider` for concurrent access.
    * @return lock object
    */
   Object getEngineLock();
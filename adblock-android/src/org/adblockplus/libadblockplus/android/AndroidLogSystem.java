@@ -23,6 +23,33 @@ import android.util.Log;
 
 public class AndroidLogSystem implements LogSystem
 {
+  /**
+   * Default min log level for release builds
+   */
+  public static final LogLevel DEFAULT_RELEASE_MIN_LOG_LEVEL = LogLevel.WARN;
+
+  private final LogLevel minLogLevel;
+
+  public AndroidLogSystem()
+  {
+    this(LogLevel.TRACE);
+  }
+
+  /**
+   * Constructor
+   * @param minLogLevel min level of the messages to be printed
+   *                    (should be set to Platform too, see `Platform.setMinLogLevel(LogLevel)`)
+   */
+  public AndroidLogSystem(final LogLevel minLogLevel)
+  {
+    this.minLogLevel = minLogLevel;
+  }
+
+  public LogLevel getMinLogLevel()
+  {
+    return minLogLevel;
+  }
+
   private static int abpLogLevelToAndroid(final LogLevel level)
   {
     switch (level)
@@ -43,6 +70,10 @@ public class AndroidLogSystem implements LogSystem
   @Override
   public void logCallback(final LogLevel level, final String message, final String source)
   {
+    if (level.compareTo(minLogLevel) < 0)
+    {
+      return;
+    }
     Log.println(abpLogLevelToAndroid(level), source, message);
   }
 }
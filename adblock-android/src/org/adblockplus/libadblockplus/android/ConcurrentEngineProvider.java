@@ -0,0 +1,41 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+/**
+ * AdblockEngineProvider letting many clients use the engine concurrently.
+ * Clients should check for it with `instanceof` and use `getEngineLock()` otherwise.
+ */
+public interface ConcurrentEngineProvider extends AdblockEngineProvider
+{
+  /**
+   * Get lock to prevent AdblockEngine reference from being changed.
+   *
+   * Read lock should be held while using the engine (many clients can hold it concurrently),
+   * write lock is held by the provider only while creating or disposing the engine.
+   * Call `waitForReady()` before acquiring read lock, not while holding it.
+   * @return read/write lock
+   */
+  MeasuredReadWriteLock getEngineReadWriteLock();
+
+  /**
+   * Get executor to run AdblockEngine tasks in background (shared by all the clients)
+   * @return task executor
+   */
+  EngineTaskExecutor getTaskExecutor();
+}
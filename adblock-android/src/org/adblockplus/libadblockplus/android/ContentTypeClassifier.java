@@ -0,0 +1,217 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import org.adblockplus.libadblockplus.FilterEngine.ContentType;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Determines resource content type by request headers and URL path extension.
+ * Stateless and thread-safe.
+ */
+public class ContentTypeClassifier
+{
+  public static final String HEADER_ACCEPT = "Accept";
+  public static final String HEADER_UPGRADE = "Upgrade";
+  public static final String HEADER_REQUESTED_WITH = "X-Requested-With";
+  public static final String HEADER_REQUESTED_WITH_XMLHTTPREQUEST = "XMLHttpRequest";
+
+  private static final String UPGRADE_WEBSOCKET = "websocket";
+
+  private static final int MAX_EXTENSION_LENGTH = 5;
+
+  private static final Map<String, ContentType> EXTENSIONS = new HashMap<String, ContentType>();
+
+  static
+  {
+    putExtensions(ContentType.SCRIPT, "js", "mjs");
+    putExtensions(ContentType.STYLESHEET, "css");
+    putExtensions(ContentType.IMAGE, "gif", "png", "jpg", "jpe", "jpeg", "bmp", "ico", "webp", "svg");
+    putExtensions(ContentType.FONT, "ttf", "otf", "woff", "woff2", "eot");
+    putExtensions(ContentType.SUBDOCUMENT, "htm", "html");
+    putExtensions(ContentType.MEDIA, "mp3", "mp4", "m4a", "m4v", "ogg", "oga", "ogv", "webm",
+      "wav", "flac", "aac", "mov", "m3u8");
+    putExtensions(ContentType.OBJECT, "swf");
+  }
+
+  private static void putExtensions(ContentType contentType, String... extensions)
+  {
+    for (String eachExtension : extensions)
+    {
+      EXTENSIONS.put(eachExtension, contentType);
+    }
+  }
+
+  /**
+   * Determine content type
+   * @param url resource URL
+   * @param requestHeaders request headers (can be `null`)
+   * @return content type, `ContentType.OTHER` if not determined
+   */
+  public ContentType classify(String url, Map<String, String> requestHeaders)
+  {
+    if (requestHeaders != null)
+    {
+      ContentType contentType = classifyByHeaders(requestHeaders);
+      if (contentType != null)
+      {
+        return contentType;
+      }
+    }
+
+    if (url == null)
+    {
+      return ContentType.OTHER;
+    }
+
+    if (url.regionMatches(true, 0, "ws:", 0, 3) || url.regionMatches(true, 0, "wss:", 0, 4))
+    {
+      return ContentType.WEBSOCKET;
+    }
+
+    ContentType contentType = classifyByExtension(url);
+    return (contentType != null ? contentType : ContentType.OTHER);
+  }
+
+  private static String getHeader(Map<String, String> headers, String name)
+  {
+    String value = headers.get(name);
+    if (value != null)
+    {
+      return value;
+    }
+
+    // header names are case-insensitive
+    for (Map.Entry<String, String> eachHeader : headers.entrySet())
+    {
+      if (name.equalsIgnoreCase(eachHeader.getKey()))
+      {
+        return eachHeader.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static boolean startsWithIgnoreCase(String value, String prefix)
+  {
+    return value.regionMatches(true, 0, prefix, 0, prefix.length());
+  }
+
+  private static ContentType classifyByHeaders(Map<String, String> headers)
+  {
+    if (HEADER_REQUESTED_WITH_XMLHTTPREQUEST.equals(getHeader(headers, HEADER_REQUESTED_WITH)))
+    {
+      return ContentType.XMLHTTPREQUEST;
+    }
+
+    String upgrade = getHeader(headers, HEADER_UPGRADE);
+    if (upgrade != null && UPGRADE_WEBSOCKET.equalsIgnoreCase(upgrade.trim()))
+    {
+      return ContentType.WEBSOCKET;
+    }
+
+    // the most specific type is listed first, `*/*` tells nothing
+    String accept = getHeader(headers, HEADER_ACCEPT);
+    if (accept != null)
+    {
+      accept = accept.trim();
+      if (startsWithIgnoreCase(accept, "image/"))
+      {
+        return ContentType.IMAGE;
+      }
+      if (startsWithIgnoreCase(accept, "text/css"))
+      {
+        return ContentType.STYLESHEET;
+      }
+      if (startsWithIgnoreCase(accept, "text/html")
+        || startsWithIgnoreCase(accept, "application/xhtml"))
+      {
+        return ContentType.SUBDOCUMENT;
+      }
+      if (startsWithIgnoreCase(accept, "video/") || startsWithIgnoreCase(accept, "audio/"))
+      {
+        return ContentType.MEDIA;
+      }
+      if (startsWithIgnoreCase(accept, "font/") || startsWithIgnoreCase(accept, "application/font"))
+      {
+        return ContentType.FONT;
+      }
+      if (startsWithIgnoreCase(accept, "application/javascript")
+        || startsWithIgnoreCase(accept, "text/javascript"))
+      {
+        return ContentType.SCRIPT;
+      }
+    }
+
+    return null;
+  }
+
+  private static ContentType classifyByExtension(String url)
+  {
+    int authorityStart = url.indexOf("://");
+    authorityStart = (authorityStart >= 0 ? authorityStart + 3 : 0);
+
+    // single scan of the path up to query, fragment or path parameters
+    int pathStart = -1;
+    int lastDot = -1;
+    int end = url.length();
+    for (int i = authorityStart; i < end; i++)
+    {
+      char c = url.charAt(i);
+      if (c == '?' || c == '#' || c == ';')
+      {
+        end = i;
+        break;
+      }
+      if (c == '/')
+      {
+        if (pathStart < 0)
+        {
+          pathStart = i;
+        }
+        lastDot = -1;
+      }
+      else if (c == '.' && pathStart >= 0)
+      {
+        lastDot = i;
+      }
+    }
+
+    if (lastDot < 0)
+    {
+      return null;
+    }
+
+    int extensionLength = end - lastDot - 1;
+    if (extensionLength == 0 || extensionLength > MAX_EXTENSION_LENGTH)
+    {
+      return null;
+    }
+
+    String extension = url.substring(lastDot + 1, end);
+    ContentType contentType = EXTENSIONS.get(extension);
+    if (contentType == null)
+    {
+      contentType = EXTENSIONS.get(extension.toLowerCase(Locale.ENGLISH));
+    }
+    return contentType;
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import java.util.Collection;
+
+/**
+ * Immutable set of domains matching the domains themselves and all their subdomains
+ * (eg. `example.com` matches `example.com` and `www.example.com`, but not `myexample.com`).
+ *
+ * Domains are stored in open addressing hash table with hashes calculated right to left,
+ * so all the host suffixes are looked up in one pass over the host (O(labels) lookups)
+ * without allocating any objects. Matching is case-insensitive.
+ */
+public final class DomainSuffixSet
+{
+  private static final DomainSuffixSet EMPTY = new DomainSuffixSet(new String[0], new int[0], 0);
+
+  private final String[] domains;
+  private final int[] hashes;
+  private final int size;
+
+  private DomainSuffixSet(String[] domains, int[] hashes, int size)
+  {
+    this.domains = domains;
+    this.hashes = hashes;
+    this.size = size;
+  }
+
+  /**
+   * Build the set
+   * @param domains domains (`null` and empty items are ignored), can be `null`
+   * @return domain set
+   */
+  public static DomainSuffixSet build(Collection<String> domains)
+  {
+    if (domains == null || domains.isEmpty())
+    {
+      return EMPTY;
+    }
+
+    // power of 2 not less than twice items count to keep load factor <= 0.5
+    int capacity = Integer.highestOneBit(Math.max(domains.size(), 1) * 2 - 1) << 1;
+    String[] table = new String[capacity];
+    int[] hashes = new int[capacity];
+    int size = 0;
+
+    for (String eachDomain : domains)
+    {
+      if (eachDomain == null)
+      {
+        continue;
+      }
+
+      String domain = eachDomain.trim();
+      if (domain.endsWith("."))
+      {
+        domain = domain.substring(0, domain.length() - 1);
+      }
+      if (domain.length() == 0)
+      {
+        continue;
+      }
+
+      int hash = hash(domain, 0, domain.length());
+      int index = indexOf(table, hashes, hash, domain, 0, domain.length());
+      if (table[index] == null)
+      {
+        table[index] = domain;
+        hashes[index] = hash;
+        size++;
+      }
+    }
+
+    return new DomainSuffixSet(table, hashes, size);
+  }
+
+  private static int hash(CharSequence s, int start, int end)
+  {
+    int hash = 0;
+    for (int i = end - 1; i >= start; i--)
+    {
+      hash = 31 * hash + Character.toLowerCase(s.charAt(i));
+    }
+    return hash;
+  }
+
+  private static int spread(int hash)
+  {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean regionEquals(String domain, String s, int start, int end)
+  {
+    return domain.length() == end - start
+      && domain.regionMatches(true, 0, s, start, end - start);
+  }
+
+  // returns index of the domain or the empty slot to insert it
+  private static int indexOf(String[] table, int[] hashes, int hash, String s, int start, int end)
+  {
+    int mask = table.length - 1;
+    int index = spread(hash) & mask;
+    while (table[index] != null
+      && !(hashes[index] == hash && regionEquals(table[index], s, start, end)))
+    {
+      index = (index + 1) & mask;
+    }
+    return index;
+  }
+
+  private boolean containsRegion(int hash, String s, int start, int end)
+  {
+    return domains[indexOf(domains, hashes, hash, s, start, end)] != null;
+  }
+
+  /**
+   * Get domains count
+   * @return domains count
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  public boolean isEmpty()
+  {
+    return size == 0;
+  }
+
+  /**
+   * Check if the host is in the set or is a subdomain of any domain in the set
+   * @param s string containing the host
+   * @param start host start index (inclusive)
+   * @param end host end index (exclusive)
+   * @return `true` if matches
+   */
+  public boolean matches(String s, int start, int end)
+  {
+    if (size == 0 || s == null || start >= end)
+    {
+      return false;
+    }
+
+    // ignore trailing dot in FQDN
+    if (s.charAt(end - 1) == '.')
+    {
+      end--;
+    }
+
+    int hash = 0;
+    for (int i = end - 1; i >= start; i--)
+    {
+      char c = s.charAt(i);
+      if (c == '.' && i < end - 1 && containsRegion(hash, s, i + 1, end))
+      {
+        return true;
+      }
+      hash = 31 * hash + Character.toLowerCase(c);
+    }
+    return containsRegion(hash, s, start, end);
+  }
+
+  /**
+   * Check if the host is in the set or is a subdomain of any domain in the set
+   * @param host host
+   * @return `true` if matches
+   */
+  public boolean matches(String host)
+  {
+    return host != null && matches(host, 0, host.length());
+  }
+
+  /**
+   * Check if the host of the URL is in the set or is a subdomain of any domain in the set
+   * @param url URL
+   * @return `true` if matches
+   */
+  public boolean matchesUrl(String url)
+  {
+    if (size == 0)
+    {
+      return false;
+    }
+
+    long hostBounds = UrlParser.getHostBounds(url);
+    return hostBounds != UrlParser.NO_HOST
+      && matches(url, UrlParser.getHostStart(hostBounds), UrlParser.getHostEnd(hostBounds));
+  }
+}
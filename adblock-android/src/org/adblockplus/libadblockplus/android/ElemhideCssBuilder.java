@@ -0,0 +1,90 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import java.util.List;
+
+/**
+ * Builds ready to inject CSS text hiding the elements matching the selectors.
+ *
+ * Selectors are grouped into comma-joined rules, so the page has to parse fewer rules.
+ * The group size is bounded as a single invalid selector makes the whole rule ignored.
+ */
+public final class ElemhideCssBuilder
+{
+  public static final int DEFAULT_MAX_SELECTORS_PER_RULE = 100;
+
+  private static final String SELECTORS_SEPARATOR = ", ";
+  private static final String DECLARATION = " { display: none !important; }\n";
+
+  // average selector length, to avoid StringBuilder reallocations
+  private static final int EXPECTED_SELECTOR_LENGTH = 32;
+
+  private ElemhideCssBuilder()
+  {
+  }
+
+  /**
+   * Build CSS text with default max selectors count per rule
+   * @param selectors selectors
+   * @return CSS text, empty if no selectors
+   */
+  public static String build(final List<String> selectors)
+  {
+    return build(selectors, DEFAULT_MAX_SELECTORS_PER_RULE);
+  }
+
+  /**
+   * Build CSS text
+   * @param selectors selectors
+   * @param maxSelectorsPerRule max selectors count in a single rule
+   * @return CSS text, empty if no selectors
+   */
+  public static String build(final List<String> selectors, final int maxSelectorsPerRule)
+  {
+    if (maxSelectorsPerRule < 1)
+    {
+      throw new IllegalArgumentException("maxSelectorsPerRule should be positive");
+    }
+
+    final int count = (selectors != null ? selectors.size() : 0);
+    if (count == 0)
+    {
+      return "";
+    }
+
+    final int rulesCount = (count + maxSelectorsPerRule - 1) / maxSelectorsPerRule;
+    final StringBuilder sb = new StringBuilder(
+      count * (EXPECTED_SELECTOR_LENGTH + SELECTORS_SEPARATOR.length())
+        + rulesCount * DECLARATION.length());
+
+    for (int i = 0; i < count; i++)
+    {
+      if (i % maxSelectorsPerRule != 0)
+      {
+        sb.append(SELECTORS_SEPARATOR);
+      }
+      sb.append(selectors.get(i));
+      if (i % maxSelectorsPerRule == maxSelectorsPerRule - 1 || i == count - 1)
+      {
+        sb.append(DECLARATION);
+      }
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import android.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache of serialized element hiding selectors payloads keyed by domain,
+ * bounded by payloads size in bytes, and of the single generic payload shared by all domains.
+ *
+ * Every invalidation starts a new generation (see `MatchesCache`),
+ * payloads of older generations are never returned.
+ */
+public class ElemhideSelectorsCache
+{
+  private final Payloads payloads;
+  private final AtomicInteger generation = new AtomicInteger(0);
+  private volatile Entry genericEntry;
+
+  /**
+   * Constructor
+   * @param maxSizeBytes max total size of payloads in bytes
+   */
+  public ElemhideSelectorsCache(int maxSizeBytes)
+  {
+    payloads = new Payloads(maxSizeBytes);
+  }
+
+  /**
+   * Get current generation
+   * Should be remembered before getting selectors and passed to `put(...)`
+   * @return current generation
+   */
+  public int getGeneration()
+  {
+    return generation.get();
+  }
+
+  /**
+   * Get cached payload
+   * @param domain domain
+   * @return payload or `null` if not cached
+   */
+  public String get(String domain)
+  {
+    Entry entry = payloads.get(domain);
+    if (entry == null || entry.generation != generation.get())
+    {
+      return null;
+    }
+    return entry.payload;
+  }
+
+  /**
+   * Put payload to the cache
+   * @param domain domain
+   * @param payload serialized selectors
+   * @param generation generation the selectors were got in (see `getGeneration()`)
+   */
+  public void put(String domain, String payload, int generation)
+  {
+    if (generation != this.generation.get())
+    {
+      // the payload is already outdated
+      return;
+    }
+    payloads.put(domain, new Entry(payload, generation));
+  }
+
+  /**
+   * Get cached generic payload
+   * @return payload or `null` if not cached
+   */
+  public String getGeneric()
+  {
+    Entry entry = genericEntry;
+    if (entry == null || entry.generation != generation.get())
+    {
+      return null;
+    }
+    return entry.payload;
+  }
+
+  /**
+   * Put generic payload to the cache
+   * @param payload serialized generic selectors
+   * @param generation generation the selectors were got in (see `getGeneration()`)
+   */
+  public void putGeneric(String payload, int generation)
+  {
+    if (generation != this.generation.get())
+    {
+      return;
+    }
+    genericEntry = new Entry(payload, generation);
+  }
+
+  /**
+   * Invalidate all the cached payloads
+   * (eg. when filters, subscriptions or settings are changed)
+   */
+  public void invalidate()
+  {
+    generation.incrementAndGet();
+    genericEntry = null;
+    payloads.evictAll();
+  }
+
+  /**
+   * Get cached payloads size (except generic payload)
+   * @return size in bytes
+   */
+  public int getSizeBytes()
+  {
+    return payloads.size();
+  }
+
+  /**
+   * Get cached payloads count
+   * @return payloads count
+   */
+  public int getCount()
+  {
+    return payloads.snapshot().size();
+  }
+
+  /**
+   * Get how many times a payload was found in the cache
+   * @return hits count
+   */
+  public int getHitCount()
+  {
+    return payloads.hitCount();
+  }
+
+  /**
+   * Get how many times a payload was not found in the cache
+   * @return misses count
+   */
+  public int getMissCount()
+  {
+    return payloads.missCount();
+  }
+
+  private static final class Entry
+  {
+    private final String payload;
+    private final int generation;
+
+    private Entry(String payload, int generation)
+    {
+      this.payload = payload;
+      this.generation = generation;
+    }
+  }
+
+  private static final class Payloads extends LruCache<String, Entry>
+  {
+    private Payloads(int maxSizeBytes)
+    {
+      super(maxSizeBytes);
+    }
+
+    @Override
+    protected int sizeOf(String domain, Entry entry)
+    {
+      // UTF-16 chars
+      return (domain.length() + entry.payload.length()) * 2;
+    }
+  }
+}
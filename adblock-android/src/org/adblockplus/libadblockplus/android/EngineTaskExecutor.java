@@ -0,0 +1,301 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of threads running AdblockEngine tasks (eg. getting element hiding selectors)
+ * in priority order.
+ *
+ * Cancelled tasks are removed from the queue and interrupted if already running,
+ * so superseded work does not occupy the threads.
+ */
+public class EngineTaskExecutor
+{
+  public static final int DEFAULT_THREADS_COUNT = 2;
+
+  // lower value is executed first
+  public static final int PRIORITY_HIGH = 0;
+  public static final int PRIORITY_NORMAL = 1;
+  public static final int PRIORITY_LOW = 2;
+
+  private static final long KEEP_ALIVE_SECONDS = 30;
+
+  private static EngineTaskExecutor sharedInstance;
+
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong sequence = new AtomicLong(0);
+
+  private final AtomicLong submittedCount = new AtomicLong(0);
+  private final AtomicLong completedCount = new AtomicLong(0);
+  private final AtomicLong cancelledCount = new AtomicLong(0);
+  private final AtomicLong totalQueueMillis = new AtomicLong(0);
+  private final AtomicLong totalRunMillis = new AtomicLong(0);
+  private final AtomicLong maxLatencyMillis = new AtomicLong(0);
+
+  public EngineTaskExecutor()
+  {
+    this(DEFAULT_THREADS_COUNT);
+  }
+
+  /**
+   * Constructor
+   * @param threadsCount max threads count, threads are stopped when idle
+   */
+  public EngineTaskExecutor(int threadsCount)
+  {
+    executor = new ThreadPoolExecutor(
+      threadsCount, threadsCount,
+      KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+      new PriorityBlockingQueue<Runnable>(),
+      new EngineThreadFactory());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Get executor shared by all the engines and clients in the process (created on first use).
+   * It's never shut down, as the threads are stopped when idle.
+   * @return shared executor
+   */
+  public static synchronized EngineTaskExecutor getShared()
+  {
+    if (sharedInstance == null)
+    {
+      sharedInstance = new EngineTaskExecutor();
+    }
+    return sharedInstance;
+  }
+
+  /**
+   * Submit task
+   * @param task task
+   * @param priority task priority (`PRIORITY_...`), tasks with equal priority are run in order
+   * @return future to cancel the task or wait for it
+   */
+  public Future<?> submit(final Runnable task, final int priority)
+  {
+    return submit(new PrioritizedTask<Object>(task, null, priority));
+  }
+
+  /**
+   * Submit task
+   * @param task task
+   * @param priority task priority (`PRIORITY_...`), tasks with equal priority are run in order
+   * @param <T> result type
+   * @return future to cancel the task or get the result
+   */
+  public <T> Future<T> submit(final Callable<T> task, final int priority)
+  {
+    return submit(new PrioritizedTask<T>(task, priority));
+  }
+
+  private <T> Future<T> submit(final PrioritizedTask<T> task)
+  {
+    submittedCount.incrementAndGet();
+    executor.execute(task);
+    return task;
+  }
+
+  /**
+   * Stop accepting new tasks and cancel the queued ones
+   */
+  public void shutdown()
+  {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Get count of the tasks waiting for a thread
+   * @return queued tasks count
+   */
+  public int getQueueSize()
+  {
+    return executor.getQueue().size();
+  }
+
+  /**
+   * Get count of the tasks running now
+   * @return running tasks count
+   */
+  public int getActiveCount()
+  {
+    return executor.getActiveCount();
+  }
+
+  /**
+   * Get submitted tasks count
+   * @return submitted tasks count
+   */
+  public long getSubmittedCount()
+  {
+    return submittedCount.get();
+  }
+
+  /**
+   * Get count of the tasks run to the end (not cancelled)
+   * @return completed tasks count
+   */
+  public long getCompletedCount()
+  {
+    return completedCount.get();
+  }
+
+  /**
+   * Get cancelled tasks count
+   * @return cancelled tasks count
+   */
+  public long getCancelledCount()
+  {
+    return cancelledCount.get();
+  }
+
+  /**
+   * Get average time completed tasks waited in the queue
+   * @return average queue time in milliseconds
+   */
+  public long getAverageQueueMillis()
+  {
+    final long completed = completedCount.get();
+    return completed > 0 ? totalQueueMillis.get() / completed : 0;
+  }
+
+  /**
+   * Get average time completed tasks were running
+   * @return average run time in milliseconds
+   */
+  public long getAverageRunMillis()
+  {
+    final long completed = completedCount.get();
+    return completed > 0 ? totalRunMillis.get() / completed : 0;
+  }
+
+  /**
+   * Get max time from submitting to completion of a task
+   * @return max latency in milliseconds
+   */
+  public long getMaxLatencyMillis()
+  {
+    return maxLatencyMillis.get();
+  }
+
+  private static void updateMax(final AtomicLong max, final long value)
+  {
+    long current;
+    while (value > (current = max.get()))
+    {
+      if (max.compareAndSet(current, value))
+      {
+        break;
+      }
+    }
+  }
+
+  private final class PrioritizedTask<T> extends FutureTask<T>
+    implements Comparable<PrioritizedTask<?>>
+  {
+    private final int priority;
+    private final long sequenceNumber;
+    private final long submittedMillis;
+    private volatile long startedMillis;
+
+    private PrioritizedTask(final Callable<T> callable, final int priority)
+    {
+      super(callable);
+      this.priority = priority;
+      this.sequenceNumber = sequence.getAndIncrement();
+      this.submittedMillis = SystemClock.elapsedRealtime();
+    }
+
+    private PrioritizedTask(final Runnable runnable, final T result, final int priority)
+    {
+      super(runnable, result);
+      this.priority = priority;
+      this.sequenceNumber = sequence.getAndIncrement();
+      this.submittedMillis = SystemClock.elapsedRealtime();
+    }
+
+    @Override
+    public void run()
+    {
+      startedMillis = SystemClock.elapsedRealtime();
+      super.run();
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning)
+    {
+      final boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled)
+      {
+        // don't keep it in the queue until it's polled
+        executor.remove(this);
+      }
+      return cancelled;
+    }
+
+    @Override
+    protected void done()
+    {
+      if (isCancelled())
+      {
+        cancelledCount.incrementAndGet();
+        return;
+      }
+
+      final long now = SystemClock.elapsedRealtime();
+      completedCount.incrementAndGet();
+      totalQueueMillis.addAndGet(startedMillis - submittedMillis);
+      totalRunMillis.addAndGet(now - startedMillis);
+      updateMax(maxLatencyMillis, now - submittedMillis);
+    }
+
+    @Override
+    public int compareTo(final PrioritizedTask<?> other)
+    {
+      if (priority != other.priority)
+      {
+        return priority < other.priority ? -1 : 1;
+      }
+      return sequenceNumber < other.sequenceNumber ? -1 : (sequenceNumber == other.sequenceNumber ? 0 : 1);
+    }
+  }
+
+  private static final class EngineThreadFactory implements ThreadFactory
+  {
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(final Runnable runnable)
+    {
+      final Thread thread = new Thread(runnable, "AdblockEngineTask-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
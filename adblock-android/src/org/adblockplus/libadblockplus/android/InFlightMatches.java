@@ -0,0 +1,124 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Blocking decisions being made by `AdblockEngine.matches(...)`
+ *
+ * Concurrent identical lookups (same `MatchesCache` key and generation) share one decision,
+ * so only the first caller makes the native call and the others wait for its result.
+ * Waiters make the decision on their own if it's made for another generation or failed.
+ */
+public class InFlightMatches
+{
+  /**
+   * Makes the blocking decision
+   */
+  public interface Decision
+  {
+    boolean matches();
+  }
+
+  private final ConcurrentHashMap<String, InFlightMatch> matches =
+    new ConcurrentHashMap<String, InFlightMatch>();
+  private final AtomicLong coalescedCount = new AtomicLong(0);
+
+  /**
+   * Make the decision or wait for the same decision being made concurrently
+   * @param key cache key (see `MatchesCache.buildKey(...)`)
+   * @param generation cache generation taken before the decision is made
+   * @param decision makes the decision
+   * @return `true` if should be blocked
+   */
+  public boolean matches(final String key, final int generation, final Decision decision)
+  {
+    final InFlightMatch inFlightMatch = new InFlightMatch(generation);
+    final InFlightMatch existingMatch = matches.putIfAbsent(key, inFlightMatch);
+    if (existingMatch != null)
+    {
+      final Boolean sharedMatches =
+        (existingMatch.generation == generation ? existingMatch.await() : null);
+      if (sharedMatches != null)
+      {
+        coalescedCount.incrementAndGet();
+        return sharedMatches;
+      }
+
+      // outdated or failed, so make the decision on our own
+      return decision.matches();
+    }
+
+    Boolean result = null;
+    try
+    {
+      result = decision.matches();
+      return result;
+    }
+    finally
+    {
+      matches.remove(key, inFlightMatch);
+      inFlightMatch.complete(result);
+    }
+  }
+
+  /**
+   * Get how many decisions were shared instead of being made again
+   * @return shared decisions count
+   */
+  public long getCoalescedCount()
+  {
+    return coalescedCount.get();
+  }
+
+  private static final class InFlightMatch
+  {
+    private final int generation;
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private volatile Boolean matches;
+
+    private InFlightMatch(final int generation)
+    {
+      this.generation = generation;
+    }
+
+    private void complete(final Boolean matches)
+    {
+      this.matches = matches;
+      completed.countDown();
+    }
+
+    // returns `null` if failed
+    private Boolean await()
+    {
+      try
+      {
+        completed.await();
+        return matches;
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import org.adblockplus.libadblockplus.FilterEngine.ContentType;
+
+import android.util.LruCache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded cache of blocking decisions made by `AdblockEngine.matches(...)`
+ *
+ * Decisions are keyed by (url, content type, referrer urls) as the full document urls
+ * are matched against `$document` exception filters (not only their hosts for `$domain`
+ * and `$third-party`). The cache is split into segments to reduce contention between
+ * WebView IO threads.
+ *
+ * Every invalidation starts a new generation, decisions of older generations are never returned
+ * (even if they were computed concurrently with the invalidation).
+ */
+public class MatchesCache
+{
+  private static final int SEGMENTS_COUNT = 8;
+
+  private static final char KEY_SEPARATOR = ' ';
+
+  private final Segment[] segments;
+  private final AtomicInteger generation = new AtomicInteger(0);
+
+  /**
+   * Constructor
+   * @param maxSize maximum number of decisions to keep
+   */
+  public MatchesCache(int maxSize)
+  {
+    if (maxSize < SEGMENTS_COUNT)
+    {
+      throw new IllegalArgumentException("Cache size should be at least " + SEGMENTS_COUNT);
+    }
+
+    segments = new Segment[SEGMENTS_COUNT];
+    for (int i = 0; i < segments.length; i++)
+    {
+      segments[i] = new Segment(maxSize / SEGMENTS_COUNT);
+    }
+  }
+
+  /**
+   * Build cache key
+   * @param url resource URL
+   * @param contentType resource content type
+   * @param referrerChainArray referrers (can be `null`)
+   * @return cache key
+   */
+  public static String buildKey(String url, ContentType contentType, String[] referrerChainArray)
+  {
+    StringBuilder sb = new StringBuilder(url.length() + 128);
+    sb.append(contentType.ordinal());
+    sb.append(KEY_SEPARATOR);
+    sb.append(url);
+
+    if (referrerChainArray != null)
+    {
+      for (String eachReferrer : referrerChainArray)
+      {
+        sb.append(KEY_SEPARATOR);
+        sb.append(eachReferrer);
+      }
+    }
+
+    return sb.toString();
+  }
+
+  private Segment getSegment(String key)
+  {
+    // spread hash bits as keys often differ only in the end
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return segments[(hash & 0x7FFFFFFF) % segments.length];
+  }
+
+  /**
+   * Get current generation
+   * Should be remembered before making a decision and passed to `put(...)`
+   * @return current generation
+   */
+  public int getGeneration()
+  {
+    return generation.get();
+  }
+
+  /**
+   * Get cached decision
+   * @param key cache key (see `buildKey(...)`)
+   * @return `null` if not cached, `true` if should be blocked, `false` otherwise
+   */
+  public Boolean get(String key)
+  {
+    Entry entry = getSegment(key).get(key);
+    if (entry == null || entry.generation != generation.get())
+    {
+      return null;
+    }
+    return entry.blocked;
+  }
+
+  /**
+   * Put decision to the cache
+   * @param key cache key (see `buildKey(...)`)
+   * @param blocked decision
+   * @param generation generation the decision was made in (see `getGeneration()`)
+   */
+  public void put(String key, boolean blocked, int generation)
+  {
+    if (generation != this.generation.get())
+    {
+      // the decision is already outdated
+      return;
+    }
+    getSegment(key).put(key, new Entry(blocked, generation));
+  }
+
+  /**
+   * Invalidate all the cached decisions
+   * (eg. when filters, subscriptions or settings are changed)
+   */
+  public void invalidate()
+  {
+    generation.incrementAndGet();
+    for (Segment eachSegment : segments)
+    {
+      eachSegment.evictAll();
+    }
+  }
+
+  /**
+   * Get cached decisions count
+   * @return cached decisions count
+   */
+  public int size()
+  {
+    int size = 0;
+    for (Segment eachSegment : segments)
+    {
+      size += eachSegment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Get how many times a decision was found in the cache
+   * @return hits count
+   */
+  public long getHitCount()
+  {
+    long count = 0;
+    for (Segment eachSegment : segments)
+    {
+      count += eachSegment.hitCount();
+    }
+    return count;
+  }
+
+  /**
+   * Get how many times a decision was not found in the cache
+   * @return misses count
+   */
+  public long getMissCount()
+  {
+    long count = 0;
+    for (Segment eachSegment : segments)
+    {
+      count += eachSegment.missCount();
+    }
+    return count;
+  }
+
+  private static final class Entry
+  {
+    private final boolean blocked;
+    private final int generation;
+
+    private Entry(boolean blocked, int generation)
+    {
+      this.blocked = blocked;
+      this.generation = generation;
+    }
+  }
+
+  private static final class Segment extends LruCache<String, Entry>
+  {
+    private Segment(int maxSize)
+    {
+      super(maxSize);
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reentrant read/write lock which measures how long the threads wait to acquire it
+ */
+public class MeasuredReadWriteLock implements ReadWriteLock
+{
+  private final MeasuredLock readLock;
+  private final MeasuredLock writeLock;
+
+  public MeasuredReadWriteLock()
+  {
+    ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    readLock = new MeasuredLock(lock, lock.readLock(), false);
+    writeLock = new MeasuredLock(lock, lock.writeLock(), true);
+  }
+
+  @Override
+  public MeasuredLock readLock()
+  {
+    return readLock;
+  }
+
+  @Override
+  public MeasuredLock writeLock()
+  {
+    return writeLock;
+  }
+
+  /**
+   * Lock wrapper collecting wait time metrics
+   */
+  public static final class MeasuredLock implements Lock
+  {
+    private final ReentrantReadWriteLock owner;
+    private final Lock lock;
+    private final boolean exclusive;
+    private final AtomicLong acquiredCount = new AtomicLong(0);
+    private final AtomicLong contendedCount = new AtomicLong(0);
+    private final AtomicLong totalWaitNanos = new AtomicLong(0);
+    private final AtomicLong maxWaitNanos = new AtomicLong(0);
+
+    private MeasuredLock(ReentrantReadWriteLock owner, Lock lock, boolean exclusive)
+    {
+      this.owner = owner;
+      this.lock = lock;
+      this.exclusive = exclusive;
+    }
+
+    /**
+     * Approximate check whether acquiring the lock now would have to wait.
+     * Not `tryLock()`: for the read lock it barges in front of a queued writer
+     */
+    private boolean isContended()
+    {
+      return owner.isWriteLocked()
+          || owner.hasQueuedThreads()
+          || (exclusive && owner.getReadLockCount() > 0);
+    }
+
+    private void onAcquired(boolean contended, long waitNanos)
+    {
+      acquiredCount.incrementAndGet();
+      if (contended)
+      {
+        contendedCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+
+        long max;
+        do
+        {
+          max = maxWaitNanos.get();
+        }
+        while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos));
+      }
+    }
+
+    @Override
+    public void lock()
+    {
+      boolean contended = isContended();
+      long started = System.nanoTime();
+      lock.lock();
+      onAcquired(contended, System.nanoTime() - started);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException
+    {
+      boolean contended = isContended();
+      long started = System.nanoTime();
+      lock.lockInterruptibly();
+      onAcquired(contended, System.nanoTime() - started);
+    }
+
+    @Override
+    public boolean tryLock()
+    {
+      boolean acquired = lock.tryLock();
+      if (acquired)
+      {
+        onAcquired(false, 0);
+      }
+      return acquired;
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException
+    {
+      boolean contended = isContended();
+      long started = System.nanoTime();
+      boolean acquired = lock.tryLock(time, unit);
+      if (acquired)
+      {
+        onAcquired(contended, System.nanoTime() - started);
+      }
+      return acquired;
+    }
+
+    @Override
+    public void unlock()
+    {
+      lock.unlock();
+    }
+
+    @Override
+    public Condition newCondition()
+    {
+      return lock.newCondition();
+    }
+
+    /**
+     * Get how many times the lock was acquired
+     * @return acquisitions count
+     */
+    public long getAcquiredCount()
+    {
+      return acquiredCount.get();
+    }
+
+    /**
+     * Get how many times the thread had to wait to acquire the lock
+     * @return contended acquisitions count
+     */
+    public long getContendedCount()
+    {
+      return contendedCount.get();
+    }
+
+    /**
+     * Get total time the threads waited to acquire the lock
+     * @return wait time in milliseconds
+     */
+    public long getTotalWaitMillis()
+    {
+      return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    /**
+     * Get max time a thread waited to acquire the lock
+     * @return wait time in milliseconds
+     */
+    public long getMaxWaitMillis()
+    {
+      return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+  }
+}
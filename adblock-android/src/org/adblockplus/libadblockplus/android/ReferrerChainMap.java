@@ -0,0 +1,159 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+import android.util.LruCache;
+
+import java.util.Arrays;
+
+/**
+ * Bounded map of documents (main frames and frames) to their document chains.
+ *
+ * Chain is built once when the document is recorded and is shared by all the resources
+ * loaded by it, so getting document URLs for a resource is a single lookup.
+ * Least recently used documents are evicted when max entries count is exceeded.
+ */
+public class ReferrerChainMap
+{
+  public static final int DEFAULT_MAX_ENTRIES = 256;
+
+  // nested frames deeper than this are truncated in the middle, the top document is kept
+  // as `$document`, `$elemhide`, `$domain` and `$third-party` are matched against it
+  public static final int MAX_CHAIN_LENGTH = 16;
+
+  private static final String[] EMPTY_CHAIN = {};
+
+  private final LruCache<String, String[]> chains;
+
+  public ReferrerChainMap()
+  {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * Constructor
+   * @param maxEntries max documents count to remember
+   */
+  public ReferrerChainMap(int maxEntries)
+  {
+    chains = new LruCache<String, String[]>(maxEntries);
+  }
+
+  /**
+   * Record document
+   * @param url document URL
+   * @param parentUrl parent document URL (eg. `Referer` header value) or `null` for main frame
+   * @return document chain: document URL first, top document URL last
+   */
+  public String[] putDocument(String url, String parentUrl)
+  {
+    if (url == null)
+    {
+      return EMPTY_CHAIN;
+    }
+
+    String[] chain;
+    if (parentUrl == null)
+    {
+      chain = new String[]
+        {
+          url
+        };
+    }
+    else
+    {
+      String[] parentChain = getDocumentUrls(parentUrl);
+      int cycleIndex = Arrays.asList(parentChain).indexOf(url);
+      if (cycleIndex >= 0)
+      {
+        // the document is already an ancestor, don't grow the chain endlessly
+        chain = Arrays.copyOfRange(parentChain, cycleIndex, parentChain.length);
+      }
+      else
+      {
+        int length = Math.min(parentChain.length + 1, MAX_CHAIN_LENGTH);
+        chain = new String[length];
+        chain[0] = url;
+        System.arraycopy(parentChain, 0, chain, 1, length - 2);
+        chain[length - 1] = parentChain[parentChain.length - 1];
+      }
+    }
+
+    chains.put(url, chain);
+    return chain;
+  }
+
+  /**
+   * Get document URLs to match the resource loaded by the document
+   * (to be passed as `documentUrls` to `FilterEngine.matches(...)`)
+   * @param referrer resource referrer (the document the resource is loaded by), can be `null`
+   * @return document chain: referrer first, top document last.
+   *         The array is shared and must not be modified.
+   */
+  public String[] getDocumentUrls(String referrer)
+  {
+    if (referrer == null)
+    {
+      return EMPTY_CHAIN;
+    }
+
+    String[] chain = chains.get(referrer);
+    if (chain == null)
+    {
+      // unknown document (eg. referrer is stripped to origin), consider it to be the top one.
+      // not remembered not to evict the chains of the recorded documents
+      chain = new String[]
+        {
+          referrer
+        };
+    }
+    return chain;
+  }
+
+  public void clear()
+  {
+    chains.evictAll();
+  }
+
+  /**
+   * Get remembered documents count
+   * @return documents count
+   */
+  public int size()
+  {
+    return chains.size();
+  }
+
+  /**
+   * Get how many times the chain was found for the referrer
+   * @return hits count
+   */
+  public int getHitCount()
+  {
+    return chains.hitCount();
+  }
+
+  /**
+   * Get how many times the chain was not found for the referrer
+   * @return misses count
+   */
+  public int getMissCount()
+  {
+    return chains.missCount();
+  }
+}
@@ -32,7 +32,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Provides single instance of AdblockEngine shared between registered clients
  */
-public class SingleInstanceEngineProvider implements AdblockEngineProvider
+public class SingleInstanceEngineProvider implements ConcurrentEngineProvider
 {
   private static final String TAG = Utils.getTag(SingleInstanceEngineProvider.class);
 
@@ -52,13 +52,14 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
   private String preloadedPreferenceName;
   private Map<String, Integer> urlToResourceIdMap;
   private AdblockEngine engine;
-  private CountDownLatch engineCreated;
+  private volatile CountDownLatch engineCreated;
   private Long v8IsolateProviderPtr;
   private List<EngineCreatedListener> engineCreatedListeners =
     new LinkedList<EngineCreatedListener>();
   private List<EngineDisposedListener> engineDisposedListeners =
     new LinkedList<EngineDisposedListener>();
   private final Object engineLock = new Object();
+  private final MeasuredReadWriteLock engineReadWriteLock = new MeasuredReadWriteLock();
 
   /*
     Simple ARC management for AdblockEngine
@@ -139,6 +140,20 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
   private void createAdblock()
   {
     Log.w(TAG, "Waiting for lock");
+    engineReadWriteLock.writeLock().lock();
+    try
+    {
+      createAdblockLocked();
+    }
+    finally
+    {
+      engineReadWriteLock.writeLock().unlock();
+    }
+  }
+
+  private void createAdblockLocked()
+  {
+    // monitor lock is still acquired for the clients using `getEngineLock()`
     synchronized (engineLock)
     {
       Log.d(TAG, "Creating adblock engine ...");
@@ -206,9 +221,14 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
           @Override
           public void run()
           {
-            synchronized (engineLock)
+            engineReadWriteLock.writeLock().lock();
+            try
+            {
+              createAdblockLocked();
+            }
+            finally
             {
-              createAdblock();
+              engineReadWriteLock.writeLock().unlock();
 
               // unlock waiting client thread
               engineCreated.countDown();
@@ -223,15 +243,21 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
   @Override
   public void waitForReady()
   {
-    if (engineCreated == null)
+    final CountDownLatch latch = engineCreated;
+    if (latch == null)
     {
+      if (referenceCounter.get() == 0)
+      {
+        // released meanwhile, nothing to wait for
+        return;
+      }
       throw new IllegalStateException("Usage exception: call retain(true) first");
     }
 
     try
     {
       Log.d(TAG, "Waiting for ready in " + Thread.currentThread());
-      engineCreated.await();
+      latch.await();
       Log.d(TAG, "Ready");
     }
     catch (InterruptedException e)
@@ -276,20 +302,28 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
   private void disposeAdblock()
   {
     Log.w(TAG, "Waiting for lock");
-    synchronized (engineLock)
+    engineReadWriteLock.writeLock().lock();
+    try
     {
-      Log.w(TAG, "Disposing adblock engine");
+      synchronized (engineLock)
+      {
+        Log.w(TAG, "Disposing adblock engine");
 
-      engine.dispose();
-      engine = null;
+        engine.dispose();
+        engine = null;
 
-      // sometimes we need to deinit something after AdblockEngine instance disposed
-      // eg. release user settings
-      for (EngineDisposedListener listener : engineDisposedListeners)
-      {
-        listener.onAdblockEngineDisposed();
+        // sometimes we need to deinit something after AdblockEngine instance disposed
+        // eg. release user settings
+        for (EngineDisposedListener listener : engineDisposedListeners)
+        {
+          listener.onAdblockEngineDisposed();
+        }
       }
     }
+    finally
+    {
+      engineReadWriteLock.writeLock().unlock();
+    }
   }
 
   @Override
@@ -303,4 +337,18 @@ public class SingleInstanceEngineProvider implements AdblockEngineProvider
   {
     return engineLock;
   }
+
+  @Override
+  public MeasuredReadWriteLock getEngineReadWriteLock()
+  {
+    return engineReadWriteLock;
+  }
+
+  // process-wide (see `EngineTaskExecutor.getShared()`), so it outlives the engine
+  // and the tasks submitted after the engine is disposed are not rejected
+  @Override
+  public EngineTaskExecutor getTaskExecutor()
+  {
+    return EngineTaskExecutor.getShared();
+  }
 }
@@ -0,0 +1,148 @@
+/*
+ * This file is part of Adblock Plus <https://adblockplus.org/>,
+ * Copyright (C) 2006-present eyeo GmbH
+ *
+ * Adblock Plus is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License version 3 as
+ * published by the Free Software Foundation.
+ *
+ * Adblock Plus is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Adblock Plus.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.adblockplus.libadblockplus.android;
+
+/**
+ * Extracts host from URL the same way `FilterEngine.getHostFromURL(String)` does
+ * (`URI` shim in libadblockplus JS code), but without crossing JNI and JS engine.
+ *
+ * Host is returned as is (not lower-cased, IDN is not converted) as the native
+ * implementation does, IPv6 address is returned without square brackets.
+ * Native quirks are kept too, eg. for `http://host?a=/b` the host is `host?a=`
+ * as authority is ended by the first `/` if any.
+ */
+public final class UrlParser
+{
+  /**
+   * Returned by `getHostBounds(String)` if there is no host
+   */
+  public static final long NO_HOST = -1L;
+
+  private UrlParser()
+  {
+  }
+
+  /**
+   * Get host bounds without allocating any objects
+   * @param url URL
+   * @return `NO_HOST` or packed bounds (see `getHostStart(long)` and `getHostEnd(long)`)
+   */
+  public static long getHostBounds(final String url)
+  {
+    if (url == null)
+    {
+      return NO_HOST;
+    }
+
+    final int schemeEnd = url.indexOf(':');
+    if (schemeEnd < 0 || !url.startsWith("//", schemeEnd + 1))
+    {
+      // invalid or not hierarchical URI (eg. `about:blank`, `data:...`)
+      return NO_HOST;
+    }
+
+    int hostStart = schemeEnd + 3;
+
+    // authority is ended by path, or by query/fragment if there is no path
+    int authEnd = url.indexOf('/', hostStart);
+    if (authEnd < 0)
+    {
+      authEnd = url.indexOf('?', hostStart);
+      if (authEnd < 0)
+      {
+        authEnd = url.indexOf('#', hostStart);
+        if (authEnd < 0)
+        {
+          authEnd = url.length();
+        }
+      }
+    }
+
+    // skip user info
+    final int authStart = url.indexOf('@', hostStart);
+    if (authStart >= 0 && authStart < authEnd)
+    {
+      hostStart = authStart + 1;
+    }
+
+    int hostEnd = url.indexOf(']', hostStart);
+    if (hostStart < url.length() && url.charAt(hostStart) == '['
+      && hostEnd >= 0 && hostEnd < authEnd)
+    {
+      // IPv6 address
+      hostStart++;
+    }
+    else
+    {
+      // skip port
+      hostEnd = url.indexOf(':', hostStart);
+      if (hostEnd < 0 || hostEnd >= authEnd)
+      {
+        hostEnd = authEnd;
+      }
+    }
+
+    if (hostEnd < hostStart)
+    {
+      return NO_HOST;
+    }
+
+    return ((long) hostStart << 32) | hostEnd;
+  }
+
+  /**
+   * Get host start index
+   * @param bounds packed bounds returned by `getHostBounds(String)`
+   * @return host start index (inclusive)
+   */
+  public static int getHostStart(final long bounds)
+  {
+    return (int) (bounds >>> 32);
+  }
+
+  /**
+   * Get host end index
+   * @param bounds packed bounds returned by `getHostBounds(String)`
+   * @return host end index (exclusive)
+   */
+  public static int getHostEnd(final long bounds)
+  {
+    return (int) bounds;
+  }
+
+  /**
+   * Get host
+   * @param url URL
+   * @return host, empty string if there is no host or `null` if URL is `null`
+   */
+  public static String getHost(final String url)
+  {
+    if (url == null)
+    {
+      return null;
+    }
+
+    final long bounds = getHostBounds(url);
+    if (bounds == NO_HOST)
+    {
+      return "";
+    }
+
+    return url.substring(getHostStart(bounds), getHostEnd(bounds));
+  }
+}